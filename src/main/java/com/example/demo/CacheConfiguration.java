@@ -0,0 +1,39 @@
+package com.example.demo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caffeine caches of the entities read by id, filled by the @Cacheable
+ * repository methods and evicted by their writes, and of the room-day
+ * schedules of RoomDaySchedules.
+ *
+ * Caffeine evicts with W-TinyLFU, so a burst of one-off reads does not push
+ * out the entries read often. Size, expiry and statistics come from
+ * cache.entities.spec. Evictions made inside a transaction wait for its
+ * commit, so a read in between cannot put the old row back.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    public static final String APPOINTMENTS = "appointments";
+    public static final String DOCTORS = "doctors";
+    public static final String PATIENTS = "patients";
+    public static final String ROOM_DAYS = "room-days";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${cache.entities.spec:maximumSize=10000,recordStats}") String spec) {
+        CaffeineCacheManager caffeine = new CaffeineCacheManager(APPOINTMENTS, DOCTORS, PATIENTS, ROOM_DAYS);
+        caffeine.setCacheSpecification(spec);
+        // Only found rows are cached (the @Cacheable methods skip empty results), so a create never
+        // hides behind a cached miss
+        caffeine.setAllowNullValues(false);
+        return new TransactionAwareCacheManagerProxy(caffeine);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo.booking;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * Body of POST /api/appointment/by-reference: an appointment whose room,
+ * doctor and patient are already stored and are named by their ids.
+ */
+public class AppointmentRequest {
+
+    private String roomName;
+    private Long doctorId;
+    private Long patientId;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime finishesAt;
+
+    public AppointmentRequest(){
+        super();
+    }
+
+    public AppointmentRequest(String roomName, Long doctorId, Long patientId,
+                              LocalDateTime startsAt, LocalDateTime finishesAt){
+        this.roomName = roomName;
+        this.doctorId = doctorId;
+        this.patientId = patientId;
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+
+    public void setRoomName(String roomName){
+        this.roomName = roomName;
+    }
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+
+    public void setDoctorId(Long doctorId){
+        this.doctorId = doctorId;
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+
+    public void setPatientId(Long patientId){
+        this.patientId = patientId;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public void setStartsAt(LocalDateTime startsAt){
+        this.startsAt = startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    public void setFinishesAt(LocalDateTime finishesAt){
+        this.finishesAt = finishesAt;
+    }
+
+    public boolean isComplete(){
+        return roomName != null && doctorId != null && patientId != null
+                && startsAt != null && finishesAt != null;
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.demo.booking;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityNotFoundException;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.booking.BatchItemResult.Status;
+import com.example.demo.entities.Appointment;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.schedule.ScheduleEntry;
+
+/**
+ * Books many appointments at once.
+ *
+ * Entries are grouped by resource and sorted by start time, and each group
+ * is checked in one sweep that merges its entries with the stored
+ * appointments of the same time span, so an entry is compared only with
+ * its neighbours instead of with the whole table.
+ *
+ * A doctor or patient may have entries in several rooms, so the entries
+ * are first swept against each other grouped by doctor, then by patient.
+ * What is left is booked one room at a time, each room in its own
+ * transaction and under the same protection as a single booking of that
+ * room: on its lane in LANES mode, and after locking its room, doctor and
+ * patient rows in LOCKING mode. There the entries are swept against the
+ * stored appointments of the room, then of their doctors, then of their
+ * patients, and the ones still accepted are stored. Rooms are booked in
+ * parallel on a ForkJoin pool of booking.batch.parallelism threads (one
+ * per core by default). A room that fails, on an unknown doctor or patient
+ * or a lane that is full, rolls back only its own entries, which are
+ * reported FAILED with the reason; every entry always gets a result.
+ *
+ * When two entries of the batch overlap, the one starting first wins; on
+ * equal starts the one earlier in the request wins. An entry that wins a
+ * resource but then loses another one, or a stored appointment, still keeps
+ * the entries it beat out of the first, so a batch may reject more than
+ * strictly needed but never double-books.
+ */
+@Service
+public class BatchBookingService {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    BookingDispatcher bookingDispatcher;
+
+    @Value("${booking.batch.parallelism:0}")
+    int parallelism;
+
+    // Entries read from a request before they are booked
+    @Value("${booking.batch.chunk-size:500}")
+    int chunkSize;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void start() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdown();
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return one result per appointment, in request order
+     */
+    public List<BatchItemResult> book(List<Appointment> appointments) {
+        return book(appointments, 0);
+    }
+
+    /**
+     * Books one chunk of a larger request.
+     *
+     * @param firstIndex position of the first appointment in the request
+     * @return one result per appointment, indexed by its position in the request
+     */
+    public List<BatchItemResult> book(List<Appointment> appointments, int firstIndex) {
+        Status[] statuses = new Status[appointments.size()];
+        List<ScheduleEntry> candidates = new ArrayList<>();
+        for (int i = 0; i < appointments.size(); i++) {
+            Appointment appointment = appointments.get(i);
+            if (!isValid(appointment)) {
+                statuses[i] = Status.INVALID;
+                continue;
+            }
+            // The entry id is the position in the request
+            Long doctorId = appointment.getDoctor() == null ? null : appointment.getDoctor().getId();
+            Long patientId = appointment.getPatient() == null ? null : appointment.getPatient().getId();
+            candidates.add(new ScheduleEntry(i, appointment.getRoom().getRoomName(), doctorId, patientId,
+                    appointment.getStartsAt(), appointment.getFinishesAt()));
+        }
+
+        // Doctors and patients shared across rooms against each other first, as if nothing were stored
+        ScheduleLoader<Object> nothingStored = (key, from, to) -> Collections.emptyList();
+        List<ScheduleEntry> free = sweepGroups(candidates, ScheduleEntry::getDoctorId, nothingStored);
+        free = sweepGroups(free, ScheduleEntry::getPatientId, nothingStored);
+
+        Map<String, List<ScheduleEntry>> rooms = new LinkedHashMap<>();
+        for (ScheduleEntry entry : free) {
+            rooms.computeIfAbsent(entry.getRoomName(), r -> new ArrayList<>()).add(entry);
+        }
+        // Each room writes only the positions of its own entries
+        String[] reasons = new String[appointments.size()];
+        pool.submit(() -> rooms.entrySet().parallelStream().forEach(room -> {
+            try {
+                List<ScheduleEntry> stored = bookingDispatcher.onLane(room.getKey(),
+                        () -> bookRoom(room.getKey(), room.getValue(), appointments));
+                for (ScheduleEntry entry : stored) {
+                    statuses[(int) entry.getId()] = Status.ACCEPTED;
+                }
+            } catch (RuntimeException e) {
+                // Only this room rolled back; the results of the others still stand
+                String reason = failureReason(e);
+                for (ScheduleEntry entry : room.getValue()) {
+                    statuses[(int) entry.getId()] = Status.FAILED;
+                    reasons[(int) entry.getId()] = reason;
+                }
+            }
+        })).join();
+
+        List<BatchItemResult> results = new ArrayList<>(statuses.length);
+        for (int i = 0; i < statuses.length; i++) {
+            Status status = statuses[i] == null ? Status.CONFLICT : statuses[i];
+            Long id = status == Status.ACCEPTED ? appointments.get(i).getId() : null;
+            results.add(new BatchItemResult(firstIndex + i, status, id, reasons[i]));
+        }
+        return results;
+    }
+
+    private static String failureReason(RuntimeException e) {
+        if (e instanceof LaneUnavailableException) {
+            return e.getMessage();
+        }
+        // The bulk flush is not translated, so Hibernate's exception arrives as the cause
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof EntityNotFoundException || cause instanceof DataIntegrityViolationException
+                    || cause instanceof ConstraintViolationException) {
+                return "Unknown doctor or patient";
+            }
+        }
+        return "Booking failed";
+    }
+
+    private static boolean isValid(Appointment appointment) {
+        return appointment.getRoom() != null && appointment.getRoom().getRoomName() != null
+                && appointment.getStartsAt() != null && appointment.getFinishesAt() != null
+                && appointment.getStartsAt().isBefore(appointment.getFinishesAt());
+    }
+
+    /**
+     * Sweeps the entries of one room against the stored schedules of the
+     * room, its doctors and its patients, and stores those still accepted,
+     * in one transaction.
+     *
+     * @return the entries stored
+     */
+    private List<ScheduleEntry> bookRoom(String roomName, List<ScheduleEntry> entries, List<Appointment> appointments) {
+        Set<Long> doctorIds = stored(entries, ScheduleEntry::getDoctorId);
+        Set<Long> patientIds = stored(entries, ScheduleEntry::getPatientId);
+        return bookingService.inRoomTransaction(roomName, doctorIds, patientIds, () -> {
+            List<ScheduleEntry> accepted = sweepGroups(entries, ScheduleEntry::getRoomName,
+                    (room, from, to) -> appointmentRepository.findRoomScheduleEntries(room, from, to));
+            accepted = sweepGroups(accepted, ScheduleEntry::getDoctorId,
+                    (doctorId, from, to) -> appointmentRepository.findDoctorScheduleEntries(doctorId, from, to));
+            accepted = sweepGroups(accepted, ScheduleEntry::getPatientId,
+                    (patientId, from, to) -> appointmentRepository.findPatientScheduleEntries(patientId, from, to));
+
+            List<Appointment> toStore = new ArrayList<>();
+            for (ScheduleEntry entry : accepted) {
+                toStore.add(appointments.get((int) entry.getId()));
+            }
+            if (!toStore.isEmpty()) {
+                bookingService.storeAll(toStore);
+            }
+            return accepted;
+        });
+    }
+
+    // Ids of the stored doctors or patients of the entries; 0 is one not stored yet
+    private static Set<Long> stored(List<ScheduleEntry> entries, Function<ScheduleEntry, Long> resource) {
+        Set<Long> ids = new HashSet<>();
+        for (ScheduleEntry entry : entries) {
+            Long id = resource.apply(entry);
+            if (id != null && id != 0) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Sweeps the candidates of each resource against its stored schedule.
+     * Candidates without the resource (a key of 0, for doctors and
+     * patients not stored yet) cannot conflict and are kept.
+     */
+    private static <K> List<ScheduleEntry> sweepGroups(List<ScheduleEntry> candidates, Function<ScheduleEntry, K> resource,
+                                                       ScheduleLoader<? super K> loader) {
+        Map<K, List<ScheduleEntry>> groups = new LinkedHashMap<>();
+        List<ScheduleEntry> accepted = new ArrayList<>();
+        for (ScheduleEntry candidate : candidates) {
+            K key = resource.apply(candidate);
+            if (key == null || Long.valueOf(0).equals(key)) {
+                accepted.add(candidate);
+            } else {
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(candidate);
+            }
+        }
+        for (Map.Entry<K, List<ScheduleEntry>> group : groups.entrySet()) {
+            accepted.addAll(sweepGroup(group.getKey(), group.getValue(), loader));
+        }
+        return accepted;
+    }
+
+    private static <K> List<ScheduleEntry> sweepGroup(K key, List<ScheduleEntry> candidates, ScheduleLoader<? super K> loader) {
+        candidates.sort(ScheduleEntry.BY_START);
+        LocalDateTime from = candidates.get(0).getStartsAt();
+        LocalDateTime to = candidates.stream().map(ScheduleEntry::getFinishesAt).max(LocalDateTime::compareTo).get();
+        return sweep(loader.load(key, from, to), candidates);
+    }
+
+    @FunctionalInterface
+    private interface ScheduleLoader<K> {
+        List<ScheduleEntry> load(K key, LocalDateTime from, LocalDateTime to);
+    }
+
+    /**
+     * Merges two start-ordered lists of one resource and returns the candidates
+     * that overlap neither a stored entry nor a candidate accepted before them.
+     */
+    public static List<ScheduleEntry> sweep(List<ScheduleEntry> existing, List<ScheduleEntry> candidates) {
+        List<ScheduleEntry> accepted = new ArrayList<>();
+        LocalDateTime busyUntil = LocalDateTime.MIN;
+        int next = 0;
+        for (ScheduleEntry candidate : candidates) {
+            // Stored entries starting up to the candidate's start extend the busy span
+            while (next < existing.size() && !existing.get(next).getStartsAt().isAfter(candidate.getStartsAt())) {
+                busyUntil = latest(busyUntil, existing.get(next).getFinishesAt());
+                next++;
+            }
+            boolean overlapsEarlier = candidate.getStartsAt().isBefore(busyUntil);
+            boolean overlapsLater = next < existing.size()
+                    && existing.get(next).getStartsAt().isBefore(candidate.getFinishesAt());
+            if (!overlapsEarlier && !overlapsLater) {
+                accepted.add(candidate);
+                busyUntil = latest(busyUntil, candidate.getFinishesAt());
+            }
+        }
+        return accepted;
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
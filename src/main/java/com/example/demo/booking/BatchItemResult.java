@@ -0,0 +1,57 @@
+package com.example.demo.booking;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+/**
+ * Outcome of one entry of POST /api/appointments/batch, by its position
+ * in the request array.
+ */
+public class BatchItemResult {
+
+    public enum Status {
+        ACCEPTED,
+        // Missing room or times, or not finishing after it starts
+        INVALID,
+        // Overlaps a stored appointment or an earlier entry of the batch
+        CONFLICT,
+        // Its room could not be booked, see the reason; nothing of that room was stored
+        FAILED
+    }
+
+    private final int index;
+    private final Status status;
+    // Ids are JSON strings, see Doctor.id
+    @JsonSerialize(using = ToStringSerializer.class)
+    private final Long id;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final String reason;
+
+    public BatchItemResult(int index, Status status, Long id){
+        this(index, status, id, null);
+    }
+
+    public BatchItemResult(int index, Status status, Long id, String reason){
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.reason = reason;
+    }
+
+    public int getIndex(){
+        return this.index;
+    }
+
+    public Status getStatus(){
+        return this.status;
+    }
+
+    public Long getId(){
+        return this.id;
+    }
+
+    public String getReason(){
+        return this.reason;
+    }
+}
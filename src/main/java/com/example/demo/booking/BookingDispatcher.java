@@ -0,0 +1,181 @@
+package com.example.demo.booking;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.schedule.ScheduleConflict;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Entry point of every booking.
+ *
+ * With booking.mode=lanes each room is hashed onto one of booking.lanes
+ * single-threaded lanes (one per core by default). A lane is the only
+ * writer of the schedules of its rooms, so the in-memory conflict check
+ * and the save that follows can never interleave with another booking
+ * for the same room, without taking any lock. Rooms on different lanes
+ * are booked in parallel.
+ *
+ * A lane holds at most booking.lanes.queue-capacity pending bookings and
+ * a caller waits at most booking.lanes.timeout for its own; past either
+ * the booking fails with LaneUnavailableException rather than piling up
+ * requests behind a slow lane. Only a booking the lane has not started
+ * times out: it is taken off the queue and never runs. A caller whose
+ * booking the lane has started waits for its outcome, so a stored
+ * booking is never answered with 503.
+ *
+ * Every lane publishes booking.lane.queue (pending bookings) and
+ * booking.lane.latency (time from submission to completion), tagged with
+ * the lane number. In any other mode bookings run on the calling thread.
+ */
+@Component
+public class BookingDispatcher {
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${booking.mode:query}")
+    BookingMode bookingMode;
+
+    @Value("${booking.lanes:0}")
+    int laneCount;
+
+    @Value("${booking.lanes.queue-capacity:1000}")
+    int queueCapacity;
+
+    @Value("${booking.lanes.timeout:5s}")
+    Duration timeout;
+
+    private ThreadPoolExecutor[] lanes;
+    private Timer[] latencies;
+
+    @PostConstruct
+    public void start() {
+        if (bookingMode != BookingMode.LANES) {
+            return;
+        }
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        lanes = new ThreadPoolExecutor[count];
+        latencies = new Timer[count];
+        for (int i = 0; i < count; i++) {
+            String lane = String.valueOf(i);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, "booking-lane-" + lane);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+            lanes[i] = executor;
+            Gauge.builder("booking.lane.queue", executor, e -> e.getQueue().size())
+                    .tag("lane", lane)
+                    .register(registry);
+            latencies[i] = Timer.builder("booking.lane.latency")
+                    .tag("lane", lane)
+                    .register(registry);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (lanes != null) {
+            for (ThreadPoolExecutor lane : lanes) {
+                lane.shutdown();
+            }
+        }
+    }
+
+    public int getLaneCount() {
+        return lanes == null ? 0 : lanes.length;
+    }
+
+    public int laneOf(String roomName) {
+        return roomName == null ? 0 : Math.floorMod(roomName.hashCode(), lanes.length);
+    }
+
+    /**
+     * Same contract as BookingService.book, on the lane of the appointment's room.
+     */
+    public List<ScheduleConflict> book(Appointment appointment) {
+        return onLane(appointment.getRoom() == null ? null : appointment.getRoom().getRoomName(),
+                () -> bookingService.book(appointment));
+    }
+
+    /**
+     * Same contract as BookingService.book, on the lane of the requested room.
+     */
+    public List<ScheduleConflict> book(AppointmentRequest request) {
+        return onLane(request.getRoomName(), () -> bookingService.book(request));
+    }
+
+    /**
+     * Runs a booking of the room on its lane, waiting for it; in any other
+     * mode, on the calling thread.
+     *
+     * @throws LaneUnavailableException if the lane is full or does not
+     *         start the booking within booking.lanes.timeout
+     */
+    public <T> T onLane(String roomName, Supplier<T> booking) {
+        if (lanes == null) {
+            return booking.get();
+        }
+        int lane = laneOf(roomName);
+        long submittedAt = System.nanoTime();
+        Future<T> booked;
+        try {
+            booked = lanes[lane].submit(() -> {
+                try {
+                    return booking.get();
+                } finally {
+                    latencies[lane].record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new LaneUnavailableException("Booking lane " + lane + " is full");
+        }
+        try {
+            try {
+                return booked.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Taken off the queue, it never runs and frees its place
+                if (lanes[lane].remove((Runnable) booked)) {
+                    throw new LaneUnavailableException("Booking lane " + lane + " did not book within " + timeout);
+                }
+                // Already started: its transaction may commit, so its outcome is the answer
+                return booked.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for booking lane " + lane, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
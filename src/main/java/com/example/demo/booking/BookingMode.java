@@ -0,0 +1,16 @@
+package com.example.demo.booking;
+
+/**
+ * How POST /api/appointment decides whether a new appointment conflicts
+ * with the existing ones. Selected with the booking.mode property.
+ */
+public enum BookingMode {
+    // One indexed probe against the appointment table
+    QUERY,
+    // In-memory ScheduleIndex, only valid for a single application instance
+    INDEX,
+    // Same probe as QUERY, run while holding a row lock on the room
+    LOCKING,
+    // In-memory check on a single-threaded lane per room, see BookingDispatcher
+    LANES
+}
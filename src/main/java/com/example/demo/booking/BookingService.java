@@ -0,0 +1,253 @@
+package com.example.demo.booking;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Doctor;
+import com.example.demo.entities.Patient;
+import com.example.demo.entities.Room;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.repositories.BulkPersister;
+import com.example.demo.repositories.DoctorRepository;
+import com.example.demo.repositories.PatientRepository;
+import com.example.demo.repositories.RoomRepository;
+import com.example.demo.schedule.ResourceType;
+import com.example.demo.schedule.RoomDaySchedules;
+import com.example.demo.schedule.ScheduleConflict;
+import com.example.demo.schedule.ScheduleIndex;
+
+/**
+ * Checks a new appointment for conflicts on its room, doctor and patient,
+ * and stores it, as one transaction.
+ *
+ * In LOCKING mode the room, doctor and patient rows are locked first,
+ * always in that order, so two bookings sharing any of them run one after
+ * the other while unrelated bookings never wait on each other. A room
+ * that does not exist yet has no row to lock; its first appointments are
+ * serialized by the primary key of the room insert instead, and the loser
+ * of that race fails. LANES only serializes bookings of the same room, so
+ * there a doctor or patient double-booking across rooms is caught by the
+ * check but not protected from races.
+ */
+@Service
+public class BookingService {
+
+    private static final Pageable FIRST = PageRequest.of(0, 1);
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    // Only present in the INDEX and LANES modes
+    @Autowired
+    ObjectProvider<ScheduleIndex> scheduleIndex;
+
+    // Cached room days of a stored appointment go once the transaction commits
+    @Autowired
+    RoomDaySchedules roomDaySchedules;
+
+    @Autowired
+    BulkPersister bulkPersister;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Value("${booking.mode:query}")
+    BookingMode bookingMode;
+
+    public BookingMode getBookingMode() {
+        return bookingMode;
+    }
+
+    /**
+     * Stores the appointment unless one of its resources is already taken.
+     *
+     * @return the resources in conflict, empty when the appointment was stored
+     */
+    @Transactional
+    public List<ScheduleConflict> book(Appointment appointment) {
+        boolean lock = bookingMode == BookingMode.LOCKING;
+        // Use the stored rows, so the cascade does not insert them a second time
+        if (appointment.getRoom() != null) {
+            String roomName = appointment.getRoom().getRoomName();
+            Optional<Room> room = lock ? roomRepository.findByRoomNameForUpdate(roomName) : roomRepository.findById(roomName);
+            room.ifPresent(appointment::setRoom);
+        }
+        if (appointment.getDoctor() != null && appointment.getDoctor().getId() != 0) {
+            long doctorId = appointment.getDoctor().getId();
+            Optional<Doctor> doctor = lock ? doctorRepository.findByIdForUpdate(doctorId) : doctorRepository.findById(doctorId);
+            doctor.ifPresent(appointment::setDoctor);
+        }
+        if (appointment.getPatient() != null && appointment.getPatient().getId() != 0) {
+            long patientId = appointment.getPatient().getId();
+            Optional<Patient> patient = lock ? patientRepository.findByIdForUpdate(patientId) : patientRepository.findById(patientId);
+            patient.ifPresent(appointment::setPatient);
+        }
+
+        return store(appointment);
+    }
+
+    /**
+     * Same as book, for a room, doctor and patient named by their ids.
+     *
+     * Outside LOCKING mode they become getReference proxies instead of
+     * loads, and the cascade skips them, so a booking is the conflict
+     * probes and one INSERT. A missing id fails that INSERT on its
+     * foreign key, as an EntityNotFoundException.
+     */
+    @Transactional
+    public List<ScheduleConflict> book(AppointmentRequest request) {
+        Appointment appointment = new Appointment();
+        appointment.setStartsAt(request.getStartsAt());
+        appointment.setFinishesAt(request.getFinishesAt());
+        if (bookingMode == BookingMode.LOCKING) {
+            appointment.setRoom(found(roomRepository.findByRoomNameForUpdate(request.getRoomName()), "room"));
+            appointment.setDoctor(found(doctorRepository.findByIdForUpdate(request.getDoctorId()), "doctor"));
+            appointment.setPatient(found(patientRepository.findByIdForUpdate(request.getPatientId()), "patient"));
+        } else {
+            appointment.setRoom(roomRepository.getReferenceById(request.getRoomName()));
+            appointment.setDoctor(doctorRepository.getReferenceById(request.getDoctorId()));
+            appointment.setPatient(patientRepository.getReferenceById(request.getPatientId()));
+        }
+        List<ScheduleConflict> conflicts = store(appointment);
+        if (conflicts.isEmpty()) {
+            // Raise a missing reference here rather than at commit
+            appointmentRepository.flush();
+        }
+        return conflicts;
+    }
+
+    private List<ScheduleConflict> store(Appointment appointment) {
+        List<ScheduleConflict> conflicts = findConflicts(appointment);
+        if (!conflicts.isEmpty()) {
+            return conflicts;
+        }
+        appointmentRepository.save(appointment);
+        roomDaySchedules.evict(appointment);
+        indexAfterCommit(appointment);
+        return conflicts;
+    }
+
+    private static <T> T found(Optional<T> row, String what) {
+        return row.orElseThrow(() -> new EntityNotFoundException("No " + what + " with that id"));
+    }
+
+    /**
+     * Runs the booking of several appointments of one room as a single
+     * transaction. In LOCKING mode the room, then the doctors, then the
+     * patients are locked first, each by ascending id, so batches and single
+     * bookings always take their locks in the same order.
+     */
+    @Transactional
+    public <T> T inRoomTransaction(String roomName, Collection<Long> doctorIds, Collection<Long> patientIds,
+                                   Supplier<T> booking) {
+        if (bookingMode == BookingMode.LOCKING) {
+            roomRepository.findByRoomNameForUpdate(roomName);
+            new TreeSet<>(doctorIds).forEach(doctorRepository::findByIdForUpdate);
+            new TreeSet<>(patientIds).forEach(patientRepository::findByIdForUpdate);
+        }
+        return booking.get();
+    }
+
+    /**
+     * Stores already validated appointments in a single transaction, in
+     * JDBC batches through the BulkPersister. Stored rooms, doctors and
+     * patients are referenced by id without being loaded; rooms not
+     * stored yet are created.
+     */
+    @Transactional
+    public void storeAll(List<Appointment> appointments) {
+        Set<String> rooms = new HashSet<>();
+        bulkPersister.persistAll(appointments, appointment -> {
+            if (appointment.getRoom() != null) {
+                String roomName = appointment.getRoom().getRoomName();
+                if (rooms.add(roomName) && !roomRepository.findById(roomName).isPresent()) {
+                    entityManager.persist(new Room(roomName));
+                }
+                appointment.setRoom(roomRepository.getReferenceById(roomName));
+            }
+            // New ones get their id from the cascade, so later entries sharing them take this branch
+            if (appointment.getDoctor() != null && appointment.getDoctor().getId() != 0) {
+                appointment.setDoctor(doctorRepository.getReferenceById(appointment.getDoctor().getId()));
+            }
+            if (appointment.getPatient() != null && appointment.getPatient().getId() != 0) {
+                appointment.setPatient(patientRepository.getReferenceById(appointment.getPatient().getId()));
+            }
+        });
+        appointments.forEach(roomDaySchedules::evict);
+        appointments.forEach(this::indexAfterCommit);
+    }
+
+    private List<ScheduleConflict> findConflicts(Appointment appointment) {
+        if (bookingMode == BookingMode.INDEX || bookingMode == BookingMode.LANES) {
+            return scheduleIndex.getObject().findConflicts(appointment);
+        }
+        List<ScheduleConflict> conflicts = new ArrayList<>();
+        if (appointment.getRoom() != null) {
+            addFirst(conflicts, ResourceType.ROOM, appointmentRepository.findOverlappingIds(
+                    appointment.getRoom().getRoomName(), appointment.getStartsAt(), appointment.getFinishesAt(), FIRST));
+        }
+        if (appointment.getDoctor() != null && appointment.getDoctor().getId() != 0) {
+            addFirst(conflicts, ResourceType.DOCTOR, appointmentRepository.findDoctorOverlappingIds(
+                    appointment.getDoctor().getId(), appointment.getStartsAt(), appointment.getFinishesAt(), FIRST));
+        }
+        if (appointment.getPatient() != null && appointment.getPatient().getId() != 0) {
+            addFirst(conflicts, ResourceType.PATIENT, appointmentRepository.findPatientOverlappingIds(
+                    appointment.getPatient().getId(), appointment.getStartsAt(), appointment.getFinishesAt(), FIRST));
+        }
+        return conflicts;
+    }
+
+    private static void addFirst(List<ScheduleConflict> conflicts, ResourceType resource, List<Long> ids) {
+        if (!ids.isEmpty()) {
+            conflicts.add(new ScheduleConflict(resource, ids.get(0)));
+        }
+    }
+
+    // The index must never show an appointment whose insert was rolled back
+    private void indexAfterCommit(Appointment appointment) {
+        ScheduleIndex index = scheduleIndex.getIfAvailable();
+        if (index == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            index.add(appointment);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                index.add(appointment);
+            }
+        });
+    }
+}
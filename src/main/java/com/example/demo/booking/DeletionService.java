@@ -0,0 +1,198 @@
+package com.example.demo.booking;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Doctor;
+import com.example.demo.entities.Patient;
+import com.example.demo.entities.Room;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.repositories.DoctorRepository;
+import com.example.demo.repositories.PatientRepository;
+import com.example.demo.repositories.RoomRepository;
+import com.example.demo.repositories.TableChanges;
+import com.example.demo.schedule.RoomDaySchedules;
+import com.example.demo.schedule.ScheduleEntry;
+import com.example.demo.schedule.ScheduleIndex;
+
+/**
+ * Set-based deletes: each is a few DELETE statements in one transaction
+ * instead of loading every entity and removing it on its own.
+ *
+ * Appointments go first, so no foreign key is left pointing at a deleted
+ * doctor, patient or room. Deleting appointments leaves their doctors,
+ * patients and rooms stored. Each delete counts its change of the tables
+ * in its own transaction. Once the transaction commits, only the deleted
+ * entries leave the schedule index. Only the cached room days of the
+ * deleted appointments are evicted when the index knows them; without an
+ * index (QUERY and LOCKING modes) every room day is.
+ */
+@Service
+public class DeletionService {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    // Only present in the INDEX and LANES modes
+    @Autowired
+    ObjectProvider<ScheduleIndex> scheduleIndex;
+
+    @Autowired
+    RoomDaySchedules roomDaySchedules;
+
+    // The set-based deletes skip Hibernate's listeners, so they count their own changes
+    @Autowired
+    TableChanges tableChanges;
+
+    /**
+     * @return whether the appointment was stored
+     */
+    @Transactional
+    public boolean deleteAppointment(long id) {
+        if (appointmentRepository.deleteRowById(id) == 0) {
+            return false;
+        }
+        tableChanges.changed(Appointment.class);
+        //The index knows the room and span of the row, so only its room days are evicted
+        ScheduleIndex index = scheduleIndex.getIfAvailable();
+        ScheduleEntry indexed = index == null ? null : index.get(id);
+        if (indexed != null) {
+            roomDaySchedules.evict(indexed);
+        } else {
+            roomDaySchedules.evictAll();
+        }
+        if (indexed != null) {
+            afterCommit(() -> index.remove(id));
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the doctor was stored
+     * @throws DataIntegrityViolationException if the doctor still has appointments
+     */
+    @Transactional
+    public boolean deleteDoctor(long id) {
+        if (doctorRepository.deleteRowById(id) == 0) {
+            return false;
+        }
+        tableChanges.changed(Doctor.class);
+        return true;
+    }
+
+    /**
+     * @return whether the patient was stored
+     * @throws DataIntegrityViolationException if the patient still has appointments
+     */
+    @Transactional
+    public boolean deletePatient(long id) {
+        if (patientRepository.deleteRowById(id) == 0) {
+            return false;
+        }
+        tableChanges.changed(Patient.class);
+        return true;
+    }
+
+    /**
+     * @return whether the room was stored
+     * @throws DataIntegrityViolationException if the room still has appointments
+     */
+    @Transactional
+    public boolean deleteRoom(String roomName) {
+        if (roomRepository.deleteRowByRoomName(roomName) == 0) {
+            return false;
+        }
+        tableChanges.changed(Room.class);
+        return true;
+    }
+
+    @Transactional
+    public void deleteAllAppointments() {
+        appointmentRepository.deleteAllInBatch();
+        tableChanges.changed(Appointment.class);
+        roomDaySchedules.evictAll();
+        afterCommit(() -> scheduleIndex.ifAvailable(ScheduleIndex::clear));
+    }
+
+    /**
+     * Deletes the appointments of a room (any room when null) finished by
+     * before (any time when null).
+     *
+     * @return the number of appointments deleted
+     */
+    @Transactional
+    public int deleteAppointments(String roomName, LocalDateTime before) {
+        // The index tells which room days the delete touches without reading the rows back
+        ScheduleIndex index = scheduleIndex.getIfAvailable();
+        List<ScheduleEntry> indexed = index == null ? Collections.emptyList() : index.findFinishedBy(roomName, before);
+        int deleted = appointmentRepository.deleteByRoomAndBefore(roomName, before);
+        if (deleted == indexed.size()) {
+            indexed.forEach(roomDaySchedules::evict);
+        } else {
+            // Rows the index does not hold, written by another instance, or no index at all
+            roomDaySchedules.evictAll();
+        }
+        tableChanges.changed(Appointment.class);
+        afterCommit(() -> indexed.forEach(entry -> index.remove(entry.getId())));
+        return deleted;
+    }
+
+    @Transactional
+    public void deleteAllDoctors() {
+        appointmentRepository.deleteAllWithDoctor();
+        doctorRepository.deleteAllInBatch();
+        tableChanges.changed(Appointment.class, Doctor.class);
+        roomDaySchedules.evictAll();
+        afterCommit(() -> scheduleIndex.ifAvailable(index -> index.removeIf(entry -> entry.getDoctorId() != 0)));
+    }
+
+    @Transactional
+    public void deleteAllPatients() {
+        appointmentRepository.deleteAllWithPatient();
+        patientRepository.deleteAllInBatch();
+        tableChanges.changed(Appointment.class, Patient.class);
+        roomDaySchedules.evictAll();
+        afterCommit(() -> scheduleIndex.ifAvailable(index -> index.removeIf(entry -> entry.getPatientId() != 0)));
+    }
+
+    @Transactional
+    public void deleteAllRooms() {
+        appointmentRepository.deleteAllWithRoom();
+        roomRepository.deleteAllInBatch();
+        tableChanges.changed(Appointment.class, Room.class);
+        roomDaySchedules.evictAll();
+        afterCommit(() -> scheduleIndex.ifAvailable(index -> index.removeIf(entry -> entry.getRoomName() != null)));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.demo.booking;
+
+/**
+ * A booking lane that could not take or finish a booking in time: its
+ * queue was full, or the booking did not complete within
+ * booking.lanes.timeout. The controllers answer it with 503.
+ */
+public class LaneUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LaneUnavailableException(String message) {
+        super(message);
+    }
+}
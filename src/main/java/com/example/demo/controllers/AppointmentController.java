@@ -1,10 +1,20 @@
 package com.example.demo.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import javax.persistence.EntityNotFoundException;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -13,10 +23,37 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.demo.booking.AppointmentRequest;
+import com.example.demo.booking.BatchBookingService;
+import com.example.demo.booking.BatchItemResult;
+import com.example.demo.booking.BookingDispatcher;
+import com.example.demo.booking.DeletionService;
+import com.example.demo.booking.LaneUnavailableException;
 import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Doctor;
+import com.example.demo.entities.Patient;
+import com.example.demo.entities.Room;
 import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.repositories.AppointmentSummary;
+import com.example.demo.repositories.AppointmentVersions;
+import com.example.demo.repositories.DoctorRepository;
+import com.example.demo.repositories.PatientRepository;
+import com.example.demo.repositories.RoomRepository;
+import com.example.demo.repositories.TableChanges;
+import com.example.demo.repositories.TableVersions;
+import com.example.demo.schedule.AvailabilityService;
+import com.example.demo.schedule.RoomDaySchedules;
+import com.example.demo.schedule.ScheduleConflict;
+import com.example.demo.schedule.Slot;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 
 @RestController
@@ -25,12 +62,68 @@ public class AppointmentController {
 
     @Autowired
     AppointmentRepository appointmentRepository;
+
+    @Autowired
+    NdjsonStreams ndjsonStreams;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    AvailabilityService availabilityService;
+
+    @Autowired
+    RoomDaySchedules roomDaySchedules;
+
+    @Autowired
+    BookingDispatcher bookingDispatcher;
+
+    @Autowired
+    BatchBookingService batchBookingService;
+
+    @Autowired
+    DeletionService deletionService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    TableChanges tableChanges;
+
+    // Concurrent identical reads share one repository call
+    private final SingleFlight reads = new SingleFlight();
+
+    // Appointments are sent with their patient, doctor and room, so a change to any of them changes the lists
+    private static final Class<?>[] WITH_ASSOCIATIONS = {Appointment.class, Patient.class, Doctor.class, Room.class};
+
     // Get all Appointments
     @GetMapping("/appointments")
-    public ResponseEntity<List<Appointment>> getAllAppointments() {
+    public ResponseEntity<List<Appointment>> getAllAppointments(@RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) Long after,
+            WebRequest request) {
+        if (KeysetPages.isRequested(limit, after)) {
+            if (!KeysetPages.isValidLimit(limit)) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            return KeysetPages.toResponse(appointmentRepository.findByIdGreaterThanOrderByIdAsc(
+                    after == null ? 0L : after, KeysetPages.firstRows(limit)), Appointment::getId);
+        }
+
+        //Unchanged since the client's copy: answer before querying
+        TableVersions tables = tableChanges.version(WITH_ASSOCIATIONS);
+        if (request.checkNotModified(tables.getEtag(), tables.getLastModified())) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+
         List<Appointment> appointments = new ArrayList<>();
 
-        appointmentRepository.findAll().forEach(appointments::add);
+        reads.load("/appointments", appointmentRepository::findAllWithAssociations).forEach(appointments::add);
 
         if (appointments.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
@@ -38,20 +131,105 @@ public class AppointmentController {
 
         return new ResponseEntity<>(appointments, HttpStatus.OK);
     }
+    // Get all Appointments as summaries: ids, room name and times only
+    @GetMapping(value = "/appointments", params = "view=summary")
+    public ResponseEntity<List<AppointmentSummary>> getAppointmentSummaries(@RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) Long after,
+            WebRequest request) {
+        if (KeysetPages.isRequested(limit, after)) {
+            if (!KeysetPages.isValidLimit(limit)) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            return KeysetPages.toResponse(appointmentRepository.findSummariesAfter(
+                    after == null ? 0L : after, KeysetPages.firstRows(limit)), AppointmentSummary::getId);
+        }
+
+        //Summaries hold ids only, so only the appointments table matters
+        TableVersions tables = tableChanges.version(Appointment.class);
+        if (request.checkNotModified(tables.getEtag(), tables.getLastModified())) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+        List<AppointmentSummary> summaries = reads.load("/appointments?view=summary", appointmentRepository::findAllSummaries);
+        if (summaries.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(summaries, HttpStatus.OK);
+    }
+    // Stream all Appointments as NDJSON
+    @GetMapping(value = "/appointments", produces = NdjsonStreams.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllAppointments() {
+        return ndjsonStreams.stream(appointmentRepository::streamAll);
+    }
+
+    // Get the Appointments of a room on a day, from the room-day cache
+    @GetMapping(value = "/appointments", params = {"room", "date"})
+    public ResponseEntity<List<Appointment>> getRoomDayAppointments(@RequestParam("room") String roomName,
+            @RequestParam("date") @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate date,
+            WebRequest request) {
+        TableVersions tables = tableChanges.version(WITH_ASSOCIATIONS);
+        if (request.checkNotModified(tables.getEtag(), tables.getLastModified())) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+        List<Appointment> appointments = reads.load(Arrays.asList("/appointments", roomName, date),
+                () -> roomDaySchedules.appointments(roomName, date));
+        if (appointments.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(appointments, HttpStatus.OK);
+    }
+
     // Get Appointment by ID
     @GetMapping("/appointments/{id}")
-    public ResponseEntity<Appointment> getAppointmentById(@PathVariable("id") long id) {
-        Optional<Appointment> appointment = appointmentRepository.findById(id);
+    public ResponseEntity<Appointment> getAppointmentById(@PathVariable("id") long id, WebRequest request) {
+        //A client holding a copy is answered from the versions of the appointment and what it embeds, before loading them
+        if (ETags.isConditional(request)) {
+            Optional<AppointmentVersions> versions = appointmentRepository.findVersionsById(id);
+            if (!versions.isPresent()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            if (request.checkNotModified(versionTag(versions.get()))) {
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+        }
+
+        Optional<Appointment> appointment = reads.load("/appointments/" + id,
+                () -> appointmentRepository.findWithAssociationsById(id));
 
         if (appointment.isPresent()) {
+            //Tags the response with the versions
+            request.checkNotModified(versionTag(appointment.get()));
             return new ResponseEntity<>(appointment.get(), HttpStatus.OK);
         } else {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
     }
+    // Get the first slots where a room, a doctor and a patient are all free
+    @GetMapping("/availability")
+    public ResponseEntity<List<Slot>> getAvailability(@RequestParam("room") String roomName,
+            @RequestParam("doctor") long doctorId,
+            @RequestParam("patient") long patientId,
+            @RequestParam(value = "duration", defaultValue = "30") int duration,
+            @RequestParam("from") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+            @RequestParam("to") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to,
+            @RequestParam(value = "count", defaultValue = "5") int count) {
+        if (!AvailabilityService.isValidWindow(duration, from, to, count)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (!roomRepository.findById(roomName).isPresent() || !doctorRepository.findById(doctorId).isPresent()
+                || !patientRepository.findById(patientId).isPresent()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        List<Slot> slots = availabilityService.jointSlots(roomName, doctorId, patientId, from, to,
+                Duration.ofMinutes(duration), count);
+        if (slots.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(slots, HttpStatus.OK);
+    }
     // Create Appointment
     @PostMapping("/appointment")
-    public ResponseEntity<List<Appointment>> createAppointment(@RequestBody Appointment appointment) {
+    public ResponseEntity<List<ScheduleConflict>> createAppointment(@RequestBody Appointment appointment) {
         /**
          * TODO
          * Implement this function, which acts as the POST /api/appointment endpoint.
@@ -64,39 +242,119 @@ public class AppointmentController {
             //Return a bad request response
             return new ResponseEntity<>(HttpStatus.valueOf(400));
          }
-         //Compares the new appointment with all the apointments in the DB
-        for (Appointment appointmentExists : appointmentRepository.findAll()) {
-            if (appointment.overlaps(appointmentExists)) {
-                //Return a not acceptable response
-                return new ResponseEntity<>(HttpStatus.valueOf(406));
-            }
+         //Compares the new appointment with the schedules of its room, doctor
+         //and patient only, and creates it if no problem was found
+        List<ScheduleConflict> conflicts;
+        try {
+            conflicts = bookingDispatcher.book(appointment);
+        } catch (LaneUnavailableException e) {
+            //The lane of the room is full or too slow; the client may retry
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (!conflicts.isEmpty()) {
+            //Return a not acceptable response telling what is already taken
+            return new ResponseEntity<>(conflicts, HttpStatus.valueOf(406));
         }
-        //Create the new appointment if not problem was found
-        appointmentRepository.save(appointment);
         //Return an is ok response
         return new ResponseEntity<>(HttpStatus.valueOf(200));
 
     }
+    // Create an Appointment for a stored room, doctor and patient named by id
+    @PostMapping("/appointment/by-reference")
+    public ResponseEntity<List<ScheduleConflict>> createAppointmentByReference(@RequestBody AppointmentRequest request) {
+        if (!request.isComplete() || !request.getStartsAt().isBefore(request.getFinishesAt())) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<ScheduleConflict> conflicts;
+        try {
+            conflicts = bookingDispatcher.book(request);
+        } catch (EntityNotFoundException | DataIntegrityViolationException e) {
+            //One of the ids is not stored
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (LaneUnavailableException e) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (!conflicts.isEmpty()) {
+            return new ResponseEntity<>(conflicts, HttpStatus.NOT_ACCEPTABLE);
+        }
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    // Create many Appointments, answering accept/reject per entry
+    @PostMapping("/appointments/batch")
+    public ResponseEntity<List<BatchItemResult>> createAppointments(InputStream body) throws IOException {
+        List<BatchItemResult> results = new ArrayList<>();
+        List<Appointment> chunk = new ArrayList<>();
+        int chunkSize = batchBookingService.getChunkSize();
+
+        //Reads the array one entry at a time and books it a chunk at a time, so only one chunk is held
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                //Anything but an object, or the body ending before the array does
+                if (token != JsonToken.START_OBJECT) {
+                    return rejectRest(results);
+                }
+                chunk.add(objectMapper.readValue(parser, Appointment.class));
+                if (chunk.size() == chunkSize) {
+                    results.addAll(batchBookingService.book(chunk, results.size()));
+                    chunk = new ArrayList<>();
+                }
+            }
+            if (parser.nextToken() != null) {
+                return rejectRest(results);
+            }
+            if (!chunk.isEmpty()) {
+                results.addAll(batchBookingService.book(chunk, results.size()));
+            }
+        } catch (JsonProcessingException e) {
+            return rejectRest(results);
+        }
+
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    //The chunks booked before the body turned out malformed stay stored; their results tell the client which
+    private static ResponseEntity<List<BatchItemResult>> rejectRest(List<BatchItemResult> booked) {
+        if (booked.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(booked, HttpStatus.BAD_REQUEST);
+    }
     // Delete Appointment by ID
     @DeleteMapping("/appointments/{id}")
     public ResponseEntity<HttpStatus> deleteAppointment(@PathVariable("id") long id) {
 
-        Optional<Appointment> appointment = appointmentRepository.findById(id);
-
-        if (!appointment.isPresent()) {
+        if (!deletionService.deleteAppointment(id)) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
-        appointmentRepository.deleteById(id);
-
         return new ResponseEntity<>(HttpStatus.OK);
 
     }
-    // Delete all Appointments
+    // Delete all Appointments, or those of a room and/or finished by a time
     @DeleteMapping("/appointments")
-    public ResponseEntity<HttpStatus> deleteAllAppointments() {
-        appointmentRepository.deleteAll();
+    public ResponseEntity<HttpStatus> deleteAllAppointments(@RequestParam(value = "room", required = false) String roomName,
+            @RequestParam(value = "before", required = false) @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime before) {
+        if (roomName == null && before == null) {
+            deletionService.deleteAllAppointments();
+        } else {
+            deletionService.deleteAppointments(roomName, before);
+        }
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    private static String versionTag(AppointmentVersions versions) {
+        return ETags.ofVersions(versions.getAppointment(), versions.getPatient(), versions.getDoctor(), versions.getRoom());
+    }
+
+    private static String versionTag(Appointment appointment) {
+        return ETags.ofVersions(appointment.getVersion(),
+                appointment.getPatient() == null ? 0 : appointment.getPatient().getVersion(),
+                appointment.getDoctor() == null ? 0 : appointment.getDoctor().getVersion(),
+                appointment.getRoom() == null ? 0 : appointment.getRoom().getVersion());
+    }
 }
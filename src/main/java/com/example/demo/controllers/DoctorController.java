@@ -1,22 +1,33 @@
 package com.example.demo.controllers;
 
+import com.example.demo.booking.DeletionService;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Doctor;
+import com.example.demo.schedule.AvailabilityService;
+import com.example.demo.schedule.Slot;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 @RestController
@@ -26,11 +37,45 @@ public class DoctorController {
     @Autowired
     DoctorRepository doctorRepository;
 
+    @Autowired
+    NdjsonStreams ndjsonStreams;
+
+    @Autowired
+    DeletionService deletionService;
+
+    @Autowired
+    BulkPersister bulkPersister;
+
+    @Autowired
+    TableChanges tableChanges;
+
+    @Autowired
+    AvailabilityService availabilityService;
+
+    // Concurrent identical reads share one repository call
+    private final SingleFlight reads = new SingleFlight();
+
     @GetMapping("/doctors")
-    public ResponseEntity<List<Doctor>> getAllDoctors(){
+    public ResponseEntity<List<Doctor>> getAllDoctors(@RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) Long after,
+            WebRequest request){
+        if (KeysetPages.isRequested(limit, after)){
+            if (!KeysetPages.isValidLimit(limit)){
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            return KeysetPages.toResponse(doctorRepository.findByIdGreaterThanOrderByIdAsc(
+                    after == null ? 0L : after, KeysetPages.firstRows(limit)), Doctor::getId);
+        }
+
+        //Unchanged since the client's copy: answer before querying
+        TableVersions tables = tableChanges.version(Doctor.class);
+        if (request.checkNotModified(tables.getEtag(), tables.getLastModified())){
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+
         List<Doctor> doctors = new ArrayList<>();
 
-        doctorRepository.findAll().forEach(doctors::add);
+        reads.load("/doctors", doctorRepository::findAll).forEach(doctors::add);
 
         if (doctors.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
@@ -39,16 +84,55 @@ public class DoctorController {
         return new ResponseEntity<>(doctors, HttpStatus.OK);
     }
 
+    @GetMapping(value = "/doctors", produces = NdjsonStreams.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllDoctors(){
+        return ndjsonStreams.stream(doctorRepository::streamAll);
+    }
+
     @GetMapping("/doctors/{id}")
-    public ResponseEntity<Doctor> getDoctorById(@PathVariable("id") long id){
-        Optional<Doctor> doctor = doctorRepository.findById(id);
+    public ResponseEntity<Doctor> getDoctorById(@PathVariable("id") long id, WebRequest request){
+        //A client holding a copy is answered from the version column, before the doctor is loaded
+        if (ETags.isConditional(request)){
+            Optional<Long> version = doctorRepository.findVersionById(id);
+            if (!version.isPresent()){
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            if (request.checkNotModified(ETags.ofVersions(version.get()))){
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+        }
+
+        Optional<Doctor> doctor = reads.load("/doctors/" + id, () -> doctorRepository.findCachedById(id));
         if (! doctor.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-
+        //Tags the response with the version
+        request.checkNotModified(ETags.ofVersions(doctor.get().getVersion()));
         return new ResponseEntity<>(doctor.get(),HttpStatus.OK);
     }
 
+    // First free slots of the doctor, walking the gaps of its schedule from the given time (now by default)
+    @GetMapping("/doctors/{id}/next-slot")
+    public ResponseEntity<List<Slot>> getNextSlots(@PathVariable("id") long id,
+            @RequestParam(value = "duration", defaultValue = "30") int duration,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+            @RequestParam(value = "horizon", defaultValue = "7") int horizon,
+            @RequestParam(value = "count", defaultValue = "5") int count){
+        if (!AvailabilityService.isValidSearch(duration, horizon, count)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (!doctorRepository.findById(id).isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        LocalDateTime earliest = from != null ? from : LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        List<Slot> slots = availabilityService.nextDoctorSlots(id, earliest, Duration.ofDays(horizon),
+                Duration.ofMinutes(duration), count);
+        if (slots.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(slots, HttpStatus.OK);
+    }
+
     @PostMapping("/doctor")
     public ResponseEntity<Doctor> createDoctor(@RequestBody Doctor doc){
         Doctor d = new Doctor(doc.getFirstName(), doc.getLastName(), doc.getAge(), doc.getEmail());
@@ -56,21 +140,36 @@ public class DoctorController {
         return new ResponseEntity<>(d, HttpStatus.CREATED);
     }
 
+    // Create many Doctors in JDBC batches
+    @PostMapping("/doctors/batch")
+    public ResponseEntity<List<Doctor>> createDoctors(@RequestBody List<Doctor> doctors){
+        if (doctors.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Doctor> created = new ArrayList<>(doctors.size());
+        for (Doctor doc : doctors){
+            created.add(new Doctor(doc.getFirstName(), doc.getLastName(), doc.getAge(), doc.getEmail()));
+        }
+        bulkPersister.persistAll(created);
+        return new ResponseEntity<>(created, HttpStatus.CREATED);
+    }
+
     @DeleteMapping("/doctors/{id}")
     public ResponseEntity<HttpStatus> deleteDoctor(@PathVariable("id") long id){
-        Optional<Doctor> doctor = doctorRepository.findById(id);
-
-        if (! doctor.isPresent()){
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        try {
+            if (!deletionService.deleteDoctor(id)){
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+        } catch (DataIntegrityViolationException e) {
+            //The doctor still has appointments
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
-
-        doctorRepository.deleteById(id);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     @DeleteMapping("/doctors")
     public ResponseEntity<HttpStatus> deleteAllDoctors(){
-        doctorRepository.deleteAll();
+        deletionService.deleteAllDoctors();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -0,0 +1,32 @@
+package com.example.demo.controllers;
+
+import java.util.StringJoiner;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Strong ETags of single entities, made from their @Version columns.
+ *
+ * The tag of a resource only has to differ from its earlier tags, so the
+ * version of the entity, and of the ones embedded in its JSON, is enough.
+ * Versions are stored with the rows, so these tags outlive restarts.
+ */
+final class ETags {
+
+    private ETags(){
+    }
+
+    // Only a client that holds a tag can be answered 304, so only then is the version read first
+    static boolean isConditional(WebRequest request){
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+    }
+
+    static String ofVersions(long... versions){
+        StringJoiner tag = new StringJoiner(".", "\"", "\"");
+        for (long version : versions){
+            tag.add(Long.toString(version));
+        }
+        return tag.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.controllers;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Keyset pagination shared by the list endpoints.
+ *
+ * A page is the first limit rows whose key is greater than the cursor, in
+ * key order, so every page is one index range scan however deep it is.
+ * The key of the last row is sent back in the X-Next-Cursor header while
+ * more rows follow; pass it as after to get the next page.
+ */
+final class KeysetPages {
+
+    static final String NEXT_CURSOR = "X-Next-Cursor";
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private KeysetPages(){
+    }
+
+    static boolean isRequested(Integer limit, Object after){
+        return limit != null || after != null;
+    }
+
+    static boolean isValidLimit(Integer limit){
+        return limit == null || (limit > 0 && limit <= MAX_LIMIT);
+    }
+
+    // The slice reads one extra row to know whether another page follows
+    static Pageable firstRows(Integer limit){
+        return PageRequest.of(0, limit == null ? DEFAULT_LIMIT : limit);
+    }
+
+    static <T> ResponseEntity<List<T>> toResponse(Slice<T> slice, Function<T, Object> key){
+        if (!slice.hasContent()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        if (slice.hasNext()){
+            List<T> rows = slice.getContent();
+            headers.set(NEXT_CURSOR, String.valueOf(key.apply(rows.get(rows.size() - 1))));
+        }
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+}
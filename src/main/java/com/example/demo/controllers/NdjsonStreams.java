@@ -0,0 +1,66 @@
+package com.example.demo.controllers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a repository stream as newline delimited JSON, one entity per line.
+ *
+ * The rows are read through a JDBC cursor inside a read-only transaction
+ * opened on the thread writing the response, and every entity is detached
+ * once written, so the persistence context never holds more than one
+ * row: memory stays flat whatever the size of the table.
+ */
+@Component
+public class NdjsonStreams {
+
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private static final int FLUSH_EVERY = 100;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    public <T> ResponseEntity<StreamingResponseBody> stream(Supplier<Stream<T>> rows){
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        StreamingResponseBody body = out -> readOnly.executeWithoutResult(status -> {
+            int written = 0;
+            try (Stream<T> stream = rows.get()){
+                for (T row : (Iterable<T>) stream::iterator){
+                    out.write(objectMapper.writeValueAsBytes(row));
+                    out.write('\n');
+                    entityManager.detach(row);
+                    if (++written % FLUSH_EVERY == 0){
+                        out.flush();
+                    }
+                }
+                out.flush();
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON)).body(body);
+    }
+}
@@ -1,6 +1,7 @@
 
 package com.example.demo.controllers;
 
+import com.example.demo.booking.DeletionService;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Patient;
 
@@ -8,16 +9,20 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 @RestController
@@ -27,11 +32,42 @@ public class PatientController {
     @Autowired
     PatientRepository patientRepository;
 
+    @Autowired
+    NdjsonStreams ndjsonStreams;
+
+    @Autowired
+    DeletionService deletionService;
+
+    @Autowired
+    BulkPersister bulkPersister;
+
+    @Autowired
+    TableChanges tableChanges;
+
+    // Concurrent identical reads share one repository call
+    private final SingleFlight reads = new SingleFlight();
+
     @GetMapping("/patients")
-    public ResponseEntity<List<Patient>> getAllPatients(){
+    public ResponseEntity<List<Patient>> getAllPatients(@RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) Long after,
+            WebRequest request){
+        if (KeysetPages.isRequested(limit, after)){
+            if (!KeysetPages.isValidLimit(limit)){
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            return KeysetPages.toResponse(patientRepository.findByIdGreaterThanOrderByIdAsc(
+                    after == null ? 0L : after, KeysetPages.firstRows(limit)), Patient::getId);
+        }
+
+        //Unchanged since the client's copy: answer before querying
+        TableVersions tables = tableChanges.version(Patient.class);
+        if (request.checkNotModified(tables.getEtag(), tables.getLastModified())){
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+
         List<Patient> patients = new ArrayList<>();
 
-        patientRepository.findAll().forEach(patients::add);
+        reads.load("/patients", patientRepository::findAll).forEach(patients::add);
 
         if (patients.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
@@ -40,12 +76,30 @@ public class PatientController {
         return new ResponseEntity<>(patients, HttpStatus.OK);
     }
 
+    @GetMapping(value = "/patients", produces = NdjsonStreams.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllPatients(){
+        return ndjsonStreams.stream(patientRepository::streamAll);
+    }
+
     @GetMapping("/patients/{id}")
-    public ResponseEntity<Patient> getPatientById(@PathVariable("id") long id){
-        Optional<Patient> patient = patientRepository.findById(id);
+    public ResponseEntity<Patient> getPatientById(@PathVariable("id") long id, WebRequest request){
+        //A client holding a copy is answered from the version column, before the patient is loaded
+        if (ETags.isConditional(request)){
+            Optional<Long> version = patientRepository.findVersionById(id);
+            if (!version.isPresent()){
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            if (request.checkNotModified(ETags.ofVersions(version.get()))){
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+        }
+
+        Optional<Patient> patient = reads.load("/patients/" + id, () -> patientRepository.findCachedById(id));
         if (! patient.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
+        //Tags the response with the version
+        request.checkNotModified(ETags.ofVersions(patient.get().getVersion()));
         return new ResponseEntity<>(patient.get(),HttpStatus.OK);
     }
 
@@ -56,19 +110,36 @@ public class PatientController {
         return new ResponseEntity<>(d, HttpStatus.CREATED);
     }
 
+    // Create many Patients in JDBC batches
+    @PostMapping("/patients/batch")
+    public ResponseEntity<List<Patient>> createPatients(@RequestBody List<Patient> patients){
+        if (patients.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Patient> created = new ArrayList<>(patients.size());
+        for (Patient pat : patients){
+            created.add(new Patient(pat.getFirstName(), pat.getLastName(), pat.getAge(), pat.getEmail()));
+        }
+        bulkPersister.persistAll(created);
+        return new ResponseEntity<>(created, HttpStatus.CREATED);
+    }
+
     @DeleteMapping("/patients/{id}")
     public ResponseEntity<HttpStatus> deletePatient(@PathVariable("id") long id){
-        Optional<Patient> patient = patientRepository.findById(id);
-        if (! patient.isPresent()){
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        try {
+            if (!deletionService.deletePatient(id)){
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+        } catch (DataIntegrityViolationException e) {
+            //The patient still has appointments
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
-        patientRepository.deleteById(id);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     @DeleteMapping("/patients")
     public ResponseEntity<HttpStatus> deleteAllPatients(){
-        patientRepository.deleteAll();
+        deletionService.deleteAllPatients();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
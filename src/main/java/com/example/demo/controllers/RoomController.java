@@ -1,23 +1,34 @@
 
 package com.example.demo.controllers;
 
+import com.example.demo.booking.DeletionService;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Room;
+import com.example.demo.schedule.AvailabilityService;
+import com.example.demo.schedule.Slot;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 @RestController
@@ -27,11 +38,42 @@ public class RoomController {
     @Autowired
     RoomRepository roomRepository;
 
+    @Autowired
+    NdjsonStreams ndjsonStreams;
+
+    @Autowired
+    DeletionService deletionService;
+
+    @Autowired
+    AvailabilityService availabilityService;
+
+    @Autowired
+    TableChanges tableChanges;
+
+    // Concurrent identical reads share one repository call
+    private final SingleFlight reads = new SingleFlight();
+
     @GetMapping("/rooms")
-    public ResponseEntity<List<Room>> getAllRooms(){
+    public ResponseEntity<List<Room>> getAllRooms(@RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) String after,
+            WebRequest request){
+        if (KeysetPages.isRequested(limit, after)){
+            if (!KeysetPages.isValidLimit(limit)){
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            return KeysetPages.toResponse(roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc(
+                    after == null ? "" : after, KeysetPages.firstRows(limit)), Room::getRoomName);
+        }
+
+        //Unchanged since the client's copy: answer before querying
+        TableVersions tables = tableChanges.version(Room.class);
+        if (request.checkNotModified(tables.getEtag(), tables.getLastModified())){
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+
         List<Room> rooms = new ArrayList<>();
 
-        roomRepository.findAll().forEach(rooms::add);
+        reads.load("/rooms", roomRepository::findAll).forEach(rooms::add);
 
         if (rooms.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
@@ -40,35 +82,94 @@ public class RoomController {
         return new ResponseEntity<>(rooms, HttpStatus.OK);
     }
 
+    // Rooms with no appointment overlapping [from, to)
+    @GetMapping("/rooms/free")
+    public ResponseEntity<List<Room>> getFreeRooms(
+            @RequestParam("from") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+            @RequestParam("to") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to){
+        if (!from.isBefore(to)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Room> rooms = roomRepository.findFree(from, to);
+        if (rooms.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(rooms, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/rooms", produces = NdjsonStreams.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllRooms(){
+        return ndjsonStreams.stream(roomRepository::streamAll);
+    }
+
     @GetMapping("/rooms/{roomName}")
-    public ResponseEntity<Room> getRoomByRoomName(@PathVariable("roomName") String roomName){
-        Optional<Room> room = roomRepository.findByRoomName(roomName);
+    public ResponseEntity<Room> getRoomByRoomName(@PathVariable("roomName") String roomName, WebRequest request){
+        //A client holding a copy is answered from the version column, before the room is loaded
+        if (ETags.isConditional(request)){
+            Optional<Long> version = roomRepository.findVersionByRoomName(roomName);
+            if (!version.isPresent()){
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            if (request.checkNotModified(ETags.ofVersions(version.get()))){
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+        }
+
+        Optional<Room> room = reads.load("/rooms/" + roomName, () -> roomRepository.findById(roomName));
         if (!room.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
+        //Tags the response with the version
+        request.checkNotModified(ETags.ofVersions(room.get().getVersion()));
         return new ResponseEntity<>(room.get(), HttpStatus.OK);
     }
 
+    // First free slots of the room, walking the gaps of its schedule from the given time (now by default)
+    @GetMapping("/rooms/{roomName}/next-slot")
+    public ResponseEntity<List<Slot>> getNextSlots(@PathVariable("roomName") String roomName,
+            @RequestParam(value = "duration", defaultValue = "30") int duration,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+            @RequestParam(value = "horizon", defaultValue = "7") int horizon,
+            @RequestParam(value = "count", defaultValue = "5") int count){
+        if (!AvailabilityService.isValidSearch(duration, horizon, count)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (!roomRepository.findById(roomName).isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        LocalDateTime earliest = from != null ? from : LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        List<Slot> slots = availabilityService.nextRoomSlots(roomName, earliest, Duration.ofDays(horizon),
+                Duration.ofMinutes(duration), count);
+        if (slots.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(slots, HttpStatus.OK);
+    }
+
     @PostMapping("/room")
     public ResponseEntity<Room> createRoom(@RequestBody Room room){
-        Room tmp = new Room(room.getRoomName());
-        roomRepository.save(tmp);
-        return new ResponseEntity<>(tmp, HttpStatus.CREATED);
+        //A new room has version 0, which Hibernate takes for not stored yet, so an existing one is kept as is
+        Room stored = roomRepository.findById(room.getRoomName())
+                .orElseGet(() -> roomRepository.save(new Room(room.getRoomName())));
+        return new ResponseEntity<>(stored, HttpStatus.CREATED);
     }
 
     @DeleteMapping("/rooms/{roomName}")
     public ResponseEntity<HttpStatus> deleteRoom(@PathVariable("roomName") String roomName){
-        Optional<Room> room = roomRepository.findByRoomName(roomName);
-        if (! room.isPresent()){
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        try {
+            if (!deletionService.deleteRoom(roomName)){
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+        } catch (DataIntegrityViolationException e) {
+            //The room still has appointments
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
-        roomRepository.deleteByRoomName(roomName);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     @DeleteMapping("/rooms")
     public ResponseEntity<HttpStatus> deleteAllRooms(){
-        roomRepository.deleteAll();
+        deletionService.deleteAllRooms();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
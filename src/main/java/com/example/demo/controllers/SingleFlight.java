@@ -0,0 +1,60 @@
+package com.example.demo.controllers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical reads of the controllers.
+ *
+ * The first request for a key runs the loader; requests for the same key
+ * arriving while it runs wait for it and get the same result, or the same
+ * exception, instead of running their own query. Nothing is kept once the
+ * call returns, so a request arriving afterwards reads again; this is not
+ * a cache. Results are shared between requests and must not be modified.
+ * A request joining a call already running may not see a write committed
+ * just before it arrived, as if it had been served a moment earlier.
+ *
+ * Only the loader is shared: every request still writes its own response,
+ * so N coalesced requests run one query but serialize the result N times.
+ */
+public final class SingleFlight {
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> T load(Object key, Supplier<T> loader){
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, call);
+        if (running != null){
+            return (T) join(running);
+        }
+        try {
+            T result = loader.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e){
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private static Object join(CompletableFuture<Object> running){
+        try {
+            return running.join();
+        } catch (CompletionException e){
+            // Rethrow what the loader threw, as the first request saw it
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error){
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -3,28 +3,41 @@ package com.example.demo.entities;
 import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.*;
+
+import org.hibernate.annotations.GenericGenerator;
+
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_appointment_room_time", columnList = "room_id, startsAt, finishesAt"),
+    @Index(name = "idx_appointment_doctor_time", columnList = "doctor_id, startsAt, finishesAt"),
+    @Index(name = "idx_appointment_patient_time", columnList = "patient_id, startsAt, finishesAt")
+})
 public class Appointment {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(generator="appointment_ids")
+    @GenericGenerator(name="appointment_ids", strategy="com.example.demo.ids.EntityIdGenerator")
+    // A JSON string, like Doctor.id
+    @JsonSerialize(using = ToStringSerializer.class)
     private long id;
 
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     @JoinColumn(name = "patient_id", referencedColumnName = "id")
     private Patient patient;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     @JoinColumn(name = "doctor_id", referencedColumnName = "id")
     private Doctor doctor;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     @JoinColumn(name = "room_id", referencedColumnName = "roomName")
     private Room room;
 
@@ -34,6 +47,11 @@ public class Appointment {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
     private LocalDateTime finishesAt;
 
+    // Versioned like Person
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long version;
+
     public Appointment(){
         super();
     }
@@ -53,6 +71,11 @@ public class Appointment {
     public void setId(long id){
         this.id = id;
     }
+
+    @JsonIgnore
+    public long getVersion(){
+        return this.version;
+    }
     
     public LocalDateTime getStartsAt(){
         return this.startsAt;
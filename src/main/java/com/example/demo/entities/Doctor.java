@@ -2,12 +2,25 @@ package com.example.demo.entities;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
 @Entity
 @Table(name="doctors")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Doctor extends Person {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    // Made in the JVM or taken from a sequence, see EntityIdGenerator
+    @GeneratedValue(generator="doctor_ids")
+    @GenericGenerator(name="doctor_ids", strategy="com.example.demo.ids.EntityIdGenerator")
+    // Time-ordered ids pass 2^53, beyond what a JavaScript number holds exactly
+    @JsonSerialize(using = ToStringSerializer.class)
     private long id;
  
     public Doctor() {
@@ -1,15 +1,27 @@
 package com.example.demo.entities;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Patient extends Person{
 
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(generator="patient_ids")
+    @GenericGenerator(name="patient_ids", strategy="com.example.demo.ids.EntityIdGenerator")
+    // A JSON string, like Doctor.id
+    @JsonSerialize(using = ToStringSerializer.class)
     private long id;
 
     public Patient(){
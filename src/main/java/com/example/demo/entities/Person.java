@@ -1,13 +1,24 @@
 package com.example.demo.entities;
 
+import javax.persistence.Column;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+// Lazy references are Hibernate proxies; their handler is not part of the JSON
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 @MappedSuperclass
 public class Person {
     private String firstName;
     private String lastName;
     private int age;
     private String email;
+    // Bumped on every update; the ETag of GET by id. Rows stored before the column existed start at 0
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long version;
     
     public Person(){
         super();
@@ -48,4 +59,10 @@ public class Person {
     public void setEmail(String email){
         this.email = email; 
     }
+
+    // Sent as the ETag, not in the body
+    @JsonIgnore
+    public long getVersion(){
+        return this.version;
+    }
 }
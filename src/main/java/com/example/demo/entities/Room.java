@@ -1,14 +1,33 @@
 package com.example.demo.entities;
 
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+// Lazy references are Hibernate proxies; their handler is not part of the JSON
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Room {
 
+    // The name is the id, so rooms are looked up by key
     @Id
     private String roomName;
 
+    // Versioned like Person
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long version;
+
     public Room(){
         super();
     }
@@ -23,4 +42,9 @@ public class Room {
         return this.roomName;
     }
 
+    @JsonIgnore
+    public long getVersion(){
+        return this.version;
+    }
+
 }
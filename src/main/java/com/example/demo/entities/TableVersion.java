@@ -0,0 +1,47 @@
+package com.example.demo.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Change counter and last change time of one entity table, shared by
+ * every instance using the database. See TableChanges.
+ */
+@Entity
+public class TableVersion {
+
+    // The simple name of the entity class
+    @Id
+    private String tableName;
+
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long changes;
+
+    // Epoch millis
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long lastModified;
+
+    public TableVersion(){
+        super();
+    }
+
+    // A new table has no changes yet, so it counts as modified when first tracked
+    public TableVersion(String tableName, long lastModified){
+        super();
+        this.tableName = tableName;
+        this.lastModified = lastModified;
+    }
+
+    public String getTableName(){
+        return this.tableName;
+    }
+
+    public long getChanges(){
+        return this.changes;
+    }
+
+    public long getLastModified(){
+        return this.lastModified;
+    }
+}
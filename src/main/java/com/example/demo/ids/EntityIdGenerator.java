@@ -0,0 +1,70 @@
+package com.example.demo.ids;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.boot.model.relational.Database;
+import org.hibernate.boot.model.relational.SqlStringGenerationContext;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Id generator of doctors, patients and appointments, chosen by the
+ * ids.generator setting (spring.jpa.properties.ids.generator):
+ *
+ * time-ordered (the default) hands out TimeOrderedIds through the
+ * TimeOrderedIdGenerator, without a round trip to the database.
+ *
+ * sequence takes them from the shared hibernate_sequence, 50 per round
+ * trip with the pooled-lo optimizer, as before the time-ordered ids; the
+ * ids stay below 2^53.
+ */
+public class EntityIdGenerator implements IdentifierGenerator {
+
+    public static final String GENERATOR = "ids.generator";
+
+    private IdentifierGenerator generator;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Object setting = serviceRegistry.getService(ConfigurationService.class).getSettings().get(GENERATOR);
+        String name = setting == null ? "time-ordered" : setting.toString().trim();
+        if ("time-ordered".equals(name)) {
+            generator = new TimeOrderedIdGenerator();
+        } else if ("sequence".equals(name)) {
+            params.setProperty(SequenceStyleGenerator.SEQUENCE_PARAM, "hibernate_sequence");
+            params.setProperty(SequenceStyleGenerator.INCREMENT_PARAM, "50");
+            params.setProperty(SequenceStyleGenerator.OPT_PARAM, "pooled-lo");
+            generator = new SequenceStyleGenerator();
+        } else {
+            throw new MappingException("Invalid " + GENERATOR + " setting: " + name + " (time-ordered or sequence)");
+        }
+        generator.configure(type, params, serviceRegistry);
+    }
+
+    // The sequence registers its table or sequence for the schema tools
+    @Override
+    public void registerExportables(Database database) {
+        generator.registerExportables(database);
+    }
+
+    @Override
+    public void initialize(SqlStringGenerationContext context) {
+        generator.initialize(context);
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return generator.generate(session, object);
+    }
+
+    @Override
+    public boolean supportsJdbcBatchInserts() {
+        return generator.supportsJdbcBatchInserts();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.ids;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Hibernate generator handing out TimeOrderedIds, so a new entity gets
+ * its id without a round trip to the database.
+ *
+ * The node id is the ids.node setting (spring.jpa.properties.ids.node),
+ * 0 by default; every instance writing to the same database needs its
+ * own. EntityIdGenerator uses it unless ids.generator says otherwise.
+ */
+public class TimeOrderedIdGenerator implements IdentifierGenerator {
+
+    public static final String NODE = "ids.node";
+
+    private TimeOrderedIds ids;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Object node = serviceRegistry.getService(ConfigurationService.class).getSettings().get(NODE);
+        try {
+            ids = TimeOrderedIds.forNode(node == null ? 0 : Integer.parseInt(node.toString().trim()));
+        } catch (IllegalArgumentException e) {
+            throw new MappingException("Invalid " + NODE + " setting: " + node, e);
+        }
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return ids.next();
+    }
+}
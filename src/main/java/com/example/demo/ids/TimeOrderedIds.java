@@ -0,0 +1,73 @@
+package com.example.demo.ids;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-ordered 64-bit ids made in the JVM, Snowflake style: from the top,
+ * a zero sign bit, 41 bits of milliseconds since EPOCH (about 69 years),
+ * NODE_BITS bits of node id and SEQUENCE_BITS bits of sequence within the
+ * millisecond.
+ *
+ * Ids of one node always grow, so inserts land at the right end of the
+ * primary key index, and nodes with different ids never collide. The
+ * clock is only followed forwards: when it goes back, or a millisecond
+ * runs out of sequence numbers, ids carry on from the last millisecond
+ * used instead of waiting. Thread safe.
+ */
+public class TimeOrderedIds {
+
+    public static final Instant EPOCH = Instant.parse("2023-01-01T00:00:00Z");
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final Map<Integer, TimeOrderedIds> NODES = new ConcurrentHashMap<>();
+
+    private final long node;
+    private final LongSupplier clock;
+    private long lastMillis = -1;
+    private long sequence;
+
+    public TimeOrderedIds(int node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE + ", was " + node);
+        }
+        this.node = node;
+        this.clock = clock;
+    }
+
+    /**
+     * The ids of a node, shared by every generator of the JVM using it.
+     */
+    public static TimeOrderedIds forNode(int node) {
+        return NODES.computeIfAbsent(node, n -> new TimeOrderedIds(n, System::currentTimeMillis));
+    }
+
+    public synchronized long next() {
+        long millis = Math.max(clock.getAsLong() - EPOCH.toEpochMilli(), lastMillis);
+        if (millis == lastMillis) {
+            if (sequence == MAX_SEQUENCE) {
+                millis++;
+                sequence = 0;
+            } else {
+                sequence++;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = millis;
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+    }
+
+    public static Instant timeOf(long id) {
+        return EPOCH.plusMillis(id >>> (NODE_BITS + SEQUENCE_BITS));
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE);
+    }
+}
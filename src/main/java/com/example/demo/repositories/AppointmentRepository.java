@@ -1,14 +1,160 @@
-
 package com.example.demo.repositories;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
+import com.example.demo.CacheConfiguration;
 import com.example.demo.entities.Appointment;
+import com.example.demo.schedule.ScheduleEntry;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
     List<Appointment> findAll();
+    @CacheEvict(cacheNames = CacheConfiguration.APPOINTMENTS, key = "#p0.id")
     Appointment save(Appointment appointment);
+    @CacheEvict(cacheNames = CacheConfiguration.APPOINTMENTS, key = "#p0.id")
     void delete(Appointment appointment);
+
+    // The associations are lazy: reads that return appointments to clients fetch them in the same select
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    @Query("select a from Appointment a")
+    List<Appointment> findAllWithAssociations();
+
+    // Cached with its associations; every delete below evicts it
+    @Cacheable(cacheNames = CacheConfiguration.APPOINTMENTS, unless = "#result == null")
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    Optional<Appointment> findWithAssociationsById(long id);
+
+    // The versions behind the ETag of GET by id, from the four rows' version columns only
+    @Query("select new com.example.demo.repositories.AppointmentVersions(a.version, p.version, d.version, r.version)"
+            + " from Appointment a left join a.patient p left join a.doctor d left join a.room r where a.id = :id")
+    Optional<AppointmentVersions> findVersionsById(@Param("id") long id);
+
+    // Summaries of every appointment, in id order, read from the appointment row alone
+    @Query("select new com.example.demo.repositories.AppointmentSummary(a.id, a.room.roomName, a.doctor.id,"
+            + " a.patient.id, a.startsAt, a.finishesAt) from Appointment a order by a.id")
+    List<AppointmentSummary> findAllSummaries();
+
+    // Keyset page of summaries after the cursor
+    @Query("select new com.example.demo.repositories.AppointmentSummary(a.id, a.room.roomName, a.doctor.id,"
+            + " a.patient.id, a.startsAt, a.finishesAt) from Appointment a where a.id > :after order by a.id")
+    Slice<AppointmentSummary> findSummariesAfter(@Param("after") long after, Pageable pageable);
+
+    // Ids of the appointments of a room overlapping [startsAt, finishesAt), served by idx_appointment_room_time
+    @Query("select a.id from Appointment a where a.room.roomName = :roomName"
+            + " and a.startsAt < :finishesAt and a.finishesAt > :startsAt")
+    List<Long> findOverlappingIds(@Param("roomName") String roomName,
+                                  @Param("startsAt") LocalDateTime startsAt,
+                                  @Param("finishesAt") LocalDateTime finishesAt,
+                                  Pageable pageable);
+
+    // Same for a doctor, served by idx_appointment_doctor_time
+    @Query("select a.id from Appointment a where a.doctor.id = :doctorId"
+            + " and a.startsAt < :finishesAt and a.finishesAt > :startsAt")
+    List<Long> findDoctorOverlappingIds(@Param("doctorId") long doctorId,
+                                        @Param("startsAt") LocalDateTime startsAt,
+                                        @Param("finishesAt") LocalDateTime finishesAt,
+                                        Pageable pageable);
+
+    // Same for a patient, served by idx_appointment_patient_time
+    @Query("select a.id from Appointment a where a.patient.id = :patientId"
+            + " and a.startsAt < :finishesAt and a.finishesAt > :startsAt")
+    List<Long> findPatientOverlappingIds(@Param("patientId") long patientId,
+                                         @Param("startsAt") LocalDateTime startsAt,
+                                         @Param("finishesAt") LocalDateTime finishesAt,
+                                         Pageable pageable);
+
+    // Appointments of a room overlapping [from, to), in start order, with their associations
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    @Query("select a from Appointment a where a.room.roomName = :roomName"
+            + " and a.startsAt < :to and a.finishesAt > :from order by a.startsAt")
+    List<Appointment> findRoomAppointments(@Param("roomName") String roomName,
+                                           @Param("from") LocalDateTime from,
+                                           @Param("to") LocalDateTime to);
+
+    // Scheduling fields of the appointments of a room overlapping [from, to), in start order
+    @Query("select new com.example.demo.schedule.ScheduleEntry(a.id, a.room.roomName, a.doctor.id, a.patient.id,"
+            + " a.startsAt, a.finishesAt) from Appointment a where a.room.roomName = :roomName"
+            + " and a.startsAt < :to and a.finishesAt > :from order by a.startsAt")
+    List<ScheduleEntry> findRoomScheduleEntries(@Param("roomName") String roomName,
+                                                @Param("from") LocalDateTime from,
+                                                @Param("to") LocalDateTime to);
+
+    @Query("select new com.example.demo.schedule.ScheduleEntry(a.id, a.room.roomName, a.doctor.id, a.patient.id,"
+            + " a.startsAt, a.finishesAt) from Appointment a where a.doctor.id = :doctorId"
+            + " and a.startsAt < :to and a.finishesAt > :from order by a.startsAt")
+    List<ScheduleEntry> findDoctorScheduleEntries(@Param("doctorId") long doctorId,
+                                                  @Param("from") LocalDateTime from,
+                                                  @Param("to") LocalDateTime to);
+
+    @Query("select new com.example.demo.schedule.ScheduleEntry(a.id, a.room.roomName, a.doctor.id, a.patient.id,"
+            + " a.startsAt, a.finishesAt) from Appointment a where a.patient.id = :patientId"
+            + " and a.startsAt < :to and a.finishesAt > :from order by a.startsAt")
+    List<ScheduleEntry> findPatientScheduleEntries(@Param("patientId") long patientId,
+                                                   @Param("from") LocalDateTime from,
+                                                   @Param("to") LocalDateTime to);
+
+    // Keyset page: the first rows after the cursor, in id order
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    Slice<Appointment> findByIdGreaterThanOrderByIdAsc(long after, Pageable pageable);
+
+    // Every row in id order through a JDBC cursor of 500 rows; read and close it inside a transaction.
+    // The patient, doctor and room come in the same row instead of one query each
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select a from Appointment a left join fetch a.patient left join fetch a.doctor left join fetch a.room order by a.id")
+    Stream<Appointment> streamAll();
+
+    // Scheduling fields of every appointment, without loading the entities
+    @Query("select new com.example.demo.schedule.ScheduleEntry(a.id, a.room.roomName, a.doctor.id, a.patient.id,"
+            + " a.startsAt, a.finishesAt) from Appointment a")
+    List<ScheduleEntry> findAllScheduleEntries();
+
+    // Set-based deletes, one statement each; they skip the cascades, so the stored rooms, doctors and patients stay.
+    // The appointments of a room (any room when null) finished by before (any time when null)
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfiguration.APPOINTMENTS, allEntries = true)
+    @Query("delete from Appointment a where (:roomName is null or a.room.roomName = :roomName)"
+            + " and (:before is null or a.finishesAt <= :before)")
+    int deleteByRoomAndBefore(@Param("roomName") String roomName, @Param("before") LocalDateTime before);
+
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfiguration.APPOINTMENTS, allEntries = true)
+    @Query("delete from Appointment a where a.doctor is not null")
+    int deleteAllWithDoctor();
+
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfiguration.APPOINTMENTS, allEntries = true)
+    @Query("delete from Appointment a where a.patient is not null")
+    int deleteAllWithPatient();
+
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfiguration.APPOINTMENTS, allEntries = true)
+    @Query("delete from Appointment a where a.room is not null")
+    int deleteAllWithRoom();
+
+    // Single DELETE by id, without loading the row; the count is 0 when there was none
+    @Transactional
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfiguration.APPOINTMENTS)
+    @Query("delete from Appointment a where a.id = :id")
+    int deleteRowById(@Param("id") long id);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.APPOINTMENTS, allEntries = true)
+    void deleteAllInBatch();
 }
@@ -0,0 +1,64 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+/**
+ * Read-only view of an appointment: its id, room, the ids of its doctor
+ * and patient, and its times. Built straight from the selected columns,
+ * so no entity is loaded, managed or snapshotted for dirty checking.
+ */
+public class AppointmentSummary {
+
+    // Ids are JSON strings, see Doctor.id
+    @JsonSerialize(using = ToStringSerializer.class)
+    private final long id;
+    private final String roomName;
+    @JsonSerialize(using = ToStringSerializer.class)
+    private final Long doctorId;
+    @JsonSerialize(using = ToStringSerializer.class)
+    private final Long patientId;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime finishesAt;
+
+    public AppointmentSummary(long id, String roomName, Long doctorId, Long patientId,
+                              LocalDateTime startsAt, LocalDateTime finishesAt){
+        this.id = id;
+        this.roomName = roomName;
+        this.doctorId = doctorId;
+        this.patientId = patientId;
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.repositories;
+
+/**
+ * The @Version of an appointment and of the patient, doctor and room its
+ * JSON embeds, read without loading any of them. A missing association
+ * counts as version 0.
+ */
+public class AppointmentVersions {
+
+    private final long appointment;
+    private final long patient;
+    private final long doctor;
+    private final long room;
+
+    public AppointmentVersions(long appointment, Long patient, Long doctor, Long room){
+        this.appointment = appointment;
+        this.patient = patient == null ? 0 : patient;
+        this.doctor = doctor == null ? 0 : doctor;
+        this.room = room == null ? 0 : room;
+    }
+
+    public long getAppointment(){
+        return this.appointment;
+    }
+
+    public long getPatient(){
+        return this.patient;
+    }
+
+    public long getDoctor(){
+        return this.doctor;
+    }
+
+    public long getRoom(){
+        return this.room;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.repositories;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Stores many new entities in one transaction, in JDBC batches of
+ * hibernate.jdbc.batch_size rows.
+ *
+ * The persistence context is flushed and cleared every batch size
+ * entities, so the inserts leave in full batches and memory stays flat
+ * however many entities are stored. Anything persisted or loaded before
+ * a flush is detached after it: prepare runs right before each persist
+ * and may swap such references for getReference proxies, which the
+ * persist cascade skips.
+ */
+@Component
+public class BulkPersister {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    int batchSize;
+
+    @Transactional
+    public <T> List<T> persistAll(List<T> entities) {
+        return persistAll(entities, entity -> { });
+    }
+
+    @Transactional
+    public <T> List<T> persistAll(List<T> entities, Consumer<? super T> prepare) {
+        int pending = 0;
+        for (T entity : entities) {
+            prepare.accept(entity);
+            entityManager.persist(entity);
+            if (++pending >= batchSize) {
+                entityManager.flush();
+                entityManager.clear();
+                pending = 0;
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return entities;
+    }
+}
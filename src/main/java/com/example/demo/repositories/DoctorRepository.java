@@ -1,13 +1,69 @@
 package com.example.demo.repositories;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import com.example.demo.CacheConfiguration;
 import com.example.demo.entities.Doctor;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface DoctorRepository extends JpaRepository<Doctor, Long> {
+    // List reads go through the query cache, dropped whenever the table is written
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Doctor> findAll();
+    @CacheEvict(cacheNames = CacheConfiguration.DOCTORS, key = "#p0.id")
     Doctor save(Doctor doc);
+    @CacheEvict(cacheNames = CacheConfiguration.DOCTORS, key = "#p0.id")
     void delete(Doctor doc);
+
+    // SELECT ... FOR UPDATE on the doctor row, held until the surrounding transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select d from Doctor d where d.id = :id")
+    Optional<Doctor> findByIdForUpdate(@Param("id") long id);
+
+    // findById through the doctors cache; the writes of this repository evict it
+    @Cacheable(cacheNames = CacheConfiguration.DOCTORS, unless = "#result == null")
+    default Optional<Doctor> findCachedById(long id){
+        return findById(id);
+    }
+
+    // The version column alone, to answer a conditional GET by id without loading the doctor
+    @Query("select d.version from Doctor d where d.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    // Keyset page: the first rows after the cursor, in id order
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    Slice<Doctor> findByIdGreaterThanOrderByIdAsc(long after, Pageable pageable);
+
+    // Every row in id order through a JDBC cursor of 500 rows; read and close it inside a transaction
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select d from Doctor d order by d.id")
+    Stream<Doctor> streamAll();
+
+    // Single DELETE by id; fails on the foreign key while appointments reference the doctor
+    @Transactional
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfiguration.DOCTORS)
+    @Query("delete from Doctor d where d.id = :id")
+    int deleteRowById(@Param("id") long id);
+
+    // Bulk delete of DeletionService, which empties the cache
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.DOCTORS, allEntries = true)
+    void deleteAllInBatch();
 }
@@ -2,13 +2,69 @@
 package com.example.demo.repositories;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import com.example.demo.CacheConfiguration;
 import com.example.demo.entities.Patient;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface PatientRepository extends JpaRepository<Patient, Long> {
+    // Cached like DoctorRepository.findAll
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Patient> findAll();
+    @CacheEvict(cacheNames = CacheConfiguration.PATIENTS, key = "#p0.id")
     Patient save(Patient doc);
+    @CacheEvict(cacheNames = CacheConfiguration.PATIENTS, key = "#p0.id")
     void delete(Patient doc);
+
+    // SELECT ... FOR UPDATE on the patient row, held until the surrounding transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Patient p where p.id = :id")
+    Optional<Patient> findByIdForUpdate(@Param("id") long id);
+
+    // findById through the patients cache, evicted like DoctorRepository.findCachedById
+    @Cacheable(cacheNames = CacheConfiguration.PATIENTS, unless = "#result == null")
+    default Optional<Patient> findCachedById(long id){
+        return findById(id);
+    }
+
+    // The version column alone, like DoctorRepository.findVersionById
+    @Query("select p.version from Patient p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    // Keyset page: the first rows after the cursor, in id order
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    Slice<Patient> findByIdGreaterThanOrderByIdAsc(long after, Pageable pageable);
+
+    // Every row in id order through a JDBC cursor of 500 rows; read and close it inside a transaction
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select p from Patient p order by p.id")
+    Stream<Patient> streamAll();
+
+    // Same as DoctorRepository.deleteRowById
+    @Transactional
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfiguration.PATIENTS)
+    @Query("delete from Patient p where p.id = :id")
+    int deleteRowById(@Param("id") long id);
+
+    // Bulk delete of DeletionService, which empties the cache
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.PATIENTS, allEntries = true)
+    void deleteAllInBatch();
 }
@@ -1,17 +1,65 @@
-
 package com.example.demo.repositories;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 
 import com.example.demo.entities.Room;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface RoomRepository extends JpaRepository<Room, Long> {
+// The id of a room is its name: findById and getReferenceById go through the persistence context
+public interface RoomRepository extends JpaRepository<Room, String> {
+    // Cached like DoctorRepository.findAll
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Room> findAll();
-    Optional<Room> findByRoomName(String roomName);
+
+    default Optional<Room> findByRoomName(String roomName){
+        return findById(roomName);
+    }
+
     Room save(Room room);
     void delete(Room room);
     void deleteByRoomName(String roomName);
+
+    // SELECT ... FOR UPDATE on the room row, held until the surrounding transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from Room r where r.roomName = :roomName")
+    Optional<Room> findByRoomNameForUpdate(@Param("roomName") String roomName);
+
+    // Rooms without an appointment overlapping [from, to): one anti-join probing idx_appointment_room_time per room
+    @Query("select r from Room r where not exists (select a.id from Appointment a where a.room = r"
+            + " and a.startsAt < :to and a.finishesAt > :from) order by r.roomName")
+    List<Room> findFree(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // The version column alone, like DoctorRepository.findVersionById
+    @Query("select r.version from Room r where r.roomName = :roomName")
+    Optional<Long> findVersionByRoomName(@Param("roomName") String roomName);
+
+    // Keyset page: the first rows after the cursor, in roomName order
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    Slice<Room> findByRoomNameGreaterThanOrderByRoomNameAsc(String after, Pageable pageable);
+
+    // Every row in roomName order through a JDBC cursor of 500 rows; read and close it inside a transaction
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select r from Room r order by r.roomName")
+    Stream<Room> streamAll();
+
+    // Single DELETE by roomName, returning the rows deleted (0 or 1)
+    @Transactional
+    @Modifying
+    @Query("delete from Room r where r.roomName = :roomName")
+    int deleteRowByRoomName(@Param("roomName") String roomName);
 }
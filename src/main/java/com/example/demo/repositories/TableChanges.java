@@ -0,0 +1,178 @@
+package com.example.demo.repositories;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import javax.persistence.metamodel.EntityType;
+
+import org.hibernate.Session;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.entities.TableVersion;
+
+/**
+ * Change counter and last change time of each entity table, behind the
+ * ETag and Last-Modified of the list endpoints.
+ *
+ * They are kept in the database, one TableVersion row per table, and
+ * bumped in the transaction that writes the table, so every instance
+ * sharing the database tags its lists alike and a write on one of them
+ * is seen by the polls of all. Inserts, updates and deletes of entities
+ * are collected by Hibernate listeners and bumped once per table just
+ * before the transaction commits. The set-based deletes bypass those, so
+ * their callers call changed inside their transaction.
+ *
+ * Reading the tags of a list is one select by key, so a poll that is not
+ * modified costs that statement instead of the list query. The bump
+ * holds the row of the table until the commit; rows are bumped in name
+ * order so two transactions writing the same tables cannot deadlock.
+ */
+@Component
+public class TableChanges implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    // Hibernate's listener interfaces are Serializable; this one is never serialized
+    private static final long serialVersionUID = 1L;
+
+    private static final String BUMP = "update table_version set changes = changes + 1,"
+            + " last_modified = greatest(last_modified, ?) where table_name = ?";
+
+    // Tables written by each session's running transaction, bumped when it commits
+    private final ConcurrentMap<EventSource, Set<String>> pending = new ConcurrentHashMap<>();
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    TableVersionRepository tableVersionRepository;
+
+    @PostConstruct
+    public void register(){
+        EventListenerRegistry listeners = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_INSERT, this);
+        listeners.appendListeners(EventType.POST_UPDATE, this);
+        listeners.appendListeners(EventType.POST_DELETE, this);
+
+        // Every instance makes sure of the rows; one starting at the same time may insert them first
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()){
+            String tableName = entity.getJavaType().getSimpleName();
+            if (entity.getJavaType() != TableVersion.class && !tableVersionRepository.existsById(tableName)){
+                try {
+                    tableVersionRepository.save(new TableVersion(tableName, System.currentTimeMillis()));
+                } catch (DataIntegrityViolationException e) {
+                    // Inserted by another instance
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a change of the tables; call it in the transaction that made it.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void changed(Class<?>... types){
+        Set<String> tableNames = new TreeSet<>();
+        for (Class<?> type : types){
+            tableNames.add(type.getSimpleName());
+        }
+        entityManager.unwrap(Session.class).doWork(connection -> bump(connection, tableNames));
+    }
+
+    /**
+     * Tags of the tables together, as committed by any instance.
+     */
+    public TableVersions version(Class<?>... types){
+        List<String> tableNames = new ArrayList<>();
+        for (Class<?> type : types){
+            tableNames.add(type.getSimpleName());
+        }
+        return tableVersionRepository.sumByTableNames(tableNames);
+    }
+
+    private static void bump(Connection connection, Set<String> tableNames) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement bump = connection.prepareStatement(BUMP)){
+            for (String tableName : tableNames){
+                bump.setLong(1, now);
+                bump.setString(2, tableName);
+                bump.addBatch();
+            }
+            bump.executeBatch();
+        }
+    }
+
+    private void changedInTransaction(EventSource session, EntityPersister persister){
+        Class<?> type = persister.getMappedClass();
+        if (type == TableVersion.class){
+            return;
+        }
+        pending.computeIfAbsent(session, s -> {
+            Set<String> tableNames = new TreeSet<>();
+            // The flush that fired this runs before these, so they see every write of the transaction
+            s.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) committing ->
+                    committing.doWork(connection -> bump(connection, tableNames)));
+            s.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, completed) ->
+                    pending.remove(s));
+            return tableNames;
+        }).add(type.getSimpleName());
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event){
+        changedInTransaction(event.getSession(), event.getPersister());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event){
+        changedInTransaction(event.getSession(), event.getPersister());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event){
+        changedInTransaction(event.getSession(), event.getPersister());
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister){
+        return false;
+    }
+
+    // The misspelled name is still abstract in Hibernate 5
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean requiresPostCommitHanding(EntityPersister persister){
+        return false;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.demo.repositories;
+
+import java.util.Collection;
+
+import com.example.demo.entities.TableVersion;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface TableVersionRepository extends JpaRepository<TableVersion, String> {
+    // Read on every call, never from a cache, as another instance may have written since; no entity is loaded
+    @Query("select new com.example.demo.repositories.TableVersions(coalesce(sum(v.changes), 0), coalesce(max(v.lastModified), 0))"
+            + " from TableVersion v where v.tableName in :tableNames")
+    TableVersions sumByTableNames(@Param("tableNames") Collection<String> tableNames);
+}
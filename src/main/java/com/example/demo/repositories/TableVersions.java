@@ -0,0 +1,25 @@
+package com.example.demo.repositories;
+
+/**
+ * The validators of a list, from the TableVersion rows of its tables
+ * read together: a strong ETag that changes with any of them, and the
+ * time of their last change in epoch millis.
+ */
+public class TableVersions {
+
+    private final long changes;
+    private final long lastModified;
+
+    public TableVersions(long changes, long lastModified){
+        this.changes = changes;
+        this.lastModified = lastModified;
+    }
+
+    public String getEtag(){
+        return "\"" + changes + "-" + Long.toString(lastModified, 36) + "\"";
+    }
+
+    public long getLastModified(){
+        return this.lastModified;
+    }
+}
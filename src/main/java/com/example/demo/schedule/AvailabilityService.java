@@ -0,0 +1,72 @@
+package com.example.demo.schedule;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.repositories.AppointmentRepository;
+
+/**
+ * Finds free slots from the stored schedules of rooms, doctors and patients.
+ *
+ * Each schedule is read for the window with one indexed range query, in
+ * start order, and the gaps between its appointments are walked, instead
+ * of probing candidate times one by one.
+ */
+@Service
+public class AvailabilityService {
+
+    public static final int MAX_COUNT = 100;
+    public static final int MAX_HORIZON_DAYS = 90;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    public static boolean isValidSearch(int durationMinutes, int horizonDays, int count){
+        return durationMinutes > 0 && horizonDays > 0 && horizonDays <= MAX_HORIZON_DAYS
+                && count > 0 && count <= MAX_COUNT;
+    }
+
+    public static boolean isValidWindow(int durationMinutes, LocalDateTime from, LocalDateTime to, int count){
+        return durationMinutes > 0 && from.isBefore(to) && !to.isAfter(from.plusDays(MAX_HORIZON_DAYS))
+                && count > 0 && count <= MAX_COUNT;
+    }
+
+    /**
+     * Returns up to count slots of the room starting at from or later and
+     * finishing within the horizon.
+     */
+    public List<Slot> nextRoomSlots(String roomName, LocalDateTime from, Duration horizon, Duration duration, int count){
+        LocalDateTime to = from.plus(horizon);
+        return FreeSlots.slots(FreeSlots.gaps(appointmentRepository.findRoomScheduleEntries(roomName, from, to), from, to),
+                duration, count);
+    }
+
+    public List<Slot> nextDoctorSlots(long doctorId, LocalDateTime from, Duration horizon, Duration duration, int count){
+        LocalDateTime to = from.plus(horizon);
+        return FreeSlots.slots(FreeSlots.gaps(appointmentRepository.findDoctorScheduleEntries(doctorId, from, to), from, to),
+                duration, count);
+    }
+
+    /**
+     * Returns up to count slots inside [from, to) where the room, the doctor
+     * and the patient are all free, earliest first. The three free lists are
+     * intersected with a linear merge.
+     */
+    public List<Slot> jointSlots(String roomName, long doctorId, long patientId,
+                                 LocalDateTime from, LocalDateTime to, Duration duration, int count){
+        List<Slot> free = FreeSlots.gaps(appointmentRepository.findRoomScheduleEntries(roomName, from, to), from, to);
+        if (!free.isEmpty()){
+            free = FreeSlots.intersect(free,
+                    FreeSlots.gaps(appointmentRepository.findDoctorScheduleEntries(doctorId, from, to), from, to));
+        }
+        if (!free.isEmpty()){
+            free = FreeSlots.intersect(free,
+                    FreeSlots.gaps(appointmentRepository.findPatientScheduleEntries(patientId, from, to), from, to));
+        }
+        return FreeSlots.slots(free, duration, count);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo.schedule;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks the gaps between start-ordered schedule entries.
+ *
+ * One pass over the entries, so finding free time costs as much as reading
+ * the schedule of the window once. Stored entries may overlap each other.
+ */
+public final class FreeSlots {
+
+    private FreeSlots(){
+    }
+
+    /**
+     * Returns the free spans of [from, to) left by the busy entries, in order.
+     */
+    public static List<Slot> gaps(List<ScheduleEntry> busy, LocalDateTime from, LocalDateTime to){
+        List<Slot> gaps = new ArrayList<>();
+        LocalDateTime freeFrom = from;
+        for (ScheduleEntry entry : busy){
+            if (!freeFrom.isBefore(to)){
+                break;
+            }
+            if (entry.getStartsAt().isAfter(freeFrom)){
+                gaps.add(new Slot(freeFrom, earliest(entry.getStartsAt(), to)));
+            }
+            if (entry.getFinishesAt().isAfter(freeFrom)){
+                freeFrom = entry.getFinishesAt();
+            }
+        }
+        if (freeFrom.isBefore(to)){
+            gaps.add(new Slot(freeFrom, to));
+        }
+        return gaps;
+    }
+
+    /**
+     * Returns the spans free in both start-ordered gap lists, in order.
+     * A linear merge: each step moves past the gap that finishes first.
+     */
+    public static List<Slot> intersect(List<Slot> a, List<Slot> b){
+        List<Slot> common = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()){
+            Slot x = a.get(i);
+            Slot y = b.get(j);
+            LocalDateTime startsAt = x.getStartsAt().isAfter(y.getStartsAt()) ? x.getStartsAt() : y.getStartsAt();
+            LocalDateTime finishesAt = earliest(x.getFinishesAt(), y.getFinishesAt());
+            if (startsAt.isBefore(finishesAt)){
+                common.add(new Slot(startsAt, finishesAt));
+            }
+            if (x.getFinishesAt().isBefore(y.getFinishesAt())){
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return common;
+    }
+
+    /**
+     * Cuts the first count back-to-back slots of the given duration out of
+     * start-ordered gaps.
+     */
+    public static List<Slot> slots(List<Slot> gaps, Duration duration, int count){
+        List<Slot> slots = new ArrayList<>();
+        for (Slot gap : gaps){
+            LocalDateTime startsAt = gap.getStartsAt();
+            LocalDateTime finishesAt = startsAt.plus(duration);
+            while (slots.size() < count && !finishesAt.isAfter(gap.getFinishesAt())){
+                slots.add(new Slot(startsAt, finishesAt));
+                startsAt = finishesAt;
+                finishesAt = startsAt.plus(duration);
+            }
+            if (slots.size() == count){
+                break;
+            }
+        }
+        return slots;
+    }
+
+    private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b){
+        return a.isBefore(b) ? a : b;
+    }
+}
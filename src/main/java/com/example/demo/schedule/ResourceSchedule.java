@@ -0,0 +1,80 @@
+package com.example.demo.schedule;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Start-ordered schedule of one room, doctor or patient.
+ *
+ * It counts the entries of each duration, so it knows the longest one it
+ * holds now, and every entry that can overlap [from, to) starts between
+ * from minus that duration and to. An overlap search is one range scan of
+ * that span, O(log n + k) with k the entries starting in it, and stays
+ * correct even when stored entries overlap each other. Removing the
+ * longest entry shrinks the span again, so one long appointment does not
+ * widen the scans after it is gone.
+ */
+class ResourceSchedule {
+
+    private final NavigableSet<ScheduleEntry> entries = new ConcurrentSkipListSet<>(ScheduleEntry.BY_START);
+    // Number of entries of each duration in seconds, guarded by itself
+    private final TreeMap<Long, Integer> durations = new TreeMap<>();
+    private volatile long longestSeconds;
+
+    // The span grows before the entry shows and shrinks after it is gone, so no search misses it
+    void add(ScheduleEntry entry){
+        long seconds = seconds(entry);
+        count(seconds, 1);
+        if (!entries.add(entry)){
+            count(seconds, -1);
+        }
+    }
+
+    void remove(ScheduleEntry entry){
+        if (entries.remove(entry)){
+            count(seconds(entry), -1);
+        }
+    }
+
+    private void count(long seconds, int change){
+        synchronized (durations){
+            durations.merge(seconds, change, (count, added) -> count + added == 0 ? null : count + added);
+            longestSeconds = durations.isEmpty() ? 0 : durations.lastKey();
+        }
+    }
+
+    private static long seconds(ScheduleEntry entry){
+        return Duration.between(entry.getStartsAt(), entry.getFinishesAt()).getSeconds();
+    }
+
+    // Entries finished by before start before it, so only those are scanned
+    List<ScheduleEntry> finishedBy(LocalDateTime before){
+        List<ScheduleEntry> finished = new ArrayList<>();
+        for (ScheduleEntry entry : entries.headSet(ScheduleEntry.probe(before, Long.MIN_VALUE), false)){
+            if (!entry.getFinishesAt().isAfter(before)){
+                finished.add(entry);
+            }
+        }
+        return finished;
+    }
+
+    List<ScheduleEntry> overlapping(LocalDateTime from, LocalDateTime to){
+        List<ScheduleEntry> overlapping = new ArrayList<>();
+        if (!from.isBefore(to)){
+            return overlapping;
+        }
+        LocalDateTime earliestStart = from.minusSeconds(longestSeconds);
+        for (ScheduleEntry entry : entries.subSet(ScheduleEntry.probe(earliestStart, Long.MIN_VALUE), true,
+                ScheduleEntry.probe(to, Long.MIN_VALUE), false)){
+            if (entry.overlaps(from, to)){
+                overlapping.add(entry);
+            }
+        }
+        return overlapping;
+    }
+}
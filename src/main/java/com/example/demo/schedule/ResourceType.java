@@ -0,0 +1,10 @@
+package com.example.demo.schedule;
+
+/**
+ * Things an appointment occupies for its whole duration.
+ */
+public enum ResourceType {
+    ROOM,
+    DOCTOR,
+    PATIENT
+}
@@ -0,0 +1,70 @@
+package com.example.demo.schedule;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.CacheConfiguration;
+import com.example.demo.entities.Appointment;
+import com.example.demo.repositories.AppointmentRepository;
+
+/**
+ * The appointments of a room on a day, cached per (room, day).
+ *
+ * Writes evict only the days of the room that the appointment's span
+ * touches, so booking one room leaves the cached days of every other room,
+ * and of its other days, in place. Evicting inside a transaction takes
+ * effect once it commits.
+ */
+@Service
+public class RoomDaySchedules {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    /**
+     * Returns the appointments of the room overlapping the day, in start
+     * order, with their patient, doctor and room.
+     */
+    @Cacheable(cacheNames = CacheConfiguration.ROOM_DAYS)
+    public List<Appointment> appointments(String roomName, LocalDate day){
+        return appointmentRepository.findRoomAppointments(roomName, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+    }
+
+    public void evict(String roomName, LocalDateTime startsAt, LocalDateTime finishesAt){
+        if (roomName == null){
+            return;
+        }
+        Cache cache = cacheManager.getCache(CacheConfiguration.ROOM_DAYS);
+        // [startsAt, finishesAt) ends on the day before when it finishes at midnight
+        LocalDate last = finishesAt.minusNanos(1).toLocalDate();
+        for (LocalDate day = startsAt.toLocalDate(); !day.isAfter(last); day = day.plusDays(1)){
+            cache.evict(new SimpleKey(roomName, day));
+        }
+    }
+
+    public void evict(ScheduleEntry entry){
+        evict(entry.getRoomName(), entry.getStartsAt(), entry.getFinishesAt());
+    }
+
+    public void evict(Appointment appointment){
+        if (appointment.getRoom() != null){
+            evict(appointment.getRoom().getRoomName(), appointment.getStartsAt(), appointment.getFinishesAt());
+        }
+    }
+
+    // For the bulk deletes, which may touch any room and day
+    public void evictAll(){
+        cacheManager.getCache(CacheConfiguration.ROOM_DAYS).clear();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.demo.schedule;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+/**
+ * A resource of a new appointment that is already taken by a stored one.
+ */
+public class ScheduleConflict {
+
+    private final ResourceType resource;
+    // Ids are JSON strings, see Doctor.id
+    @JsonSerialize(using = ToStringSerializer.class)
+    private final long appointmentId;
+
+    public ScheduleConflict(ResourceType resource, long appointmentId){
+        this.resource = resource;
+        this.appointmentId = appointmentId;
+    }
+
+    public ResourceType getResource(){
+        return this.resource;
+    }
+
+    public long getAppointmentId(){
+        return this.appointmentId;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo.schedule;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+import com.example.demo.entities.Appointment;
+
+/**
+ * Lightweight copy of the scheduling fields of an Appointment.
+ * The index keeps these instead of the entities so it does not pin
+ * patients and doctors in memory. A doctor or patient id of 0 means the
+ * appointment has none.
+ */
+public class ScheduleEntry {
+
+    public static final Comparator<ScheduleEntry> BY_START = Comparator
+            .comparing(ScheduleEntry::getStartsAt)
+            .thenComparingLong(ScheduleEntry::getId);
+
+    private final long id;
+    private final String roomName;
+    private final long doctorId;
+    private final long patientId;
+    private final LocalDateTime startsAt;
+    private final LocalDateTime finishesAt;
+
+    public ScheduleEntry(long id, String roomName, LocalDateTime startsAt, LocalDateTime finishesAt){
+        this(id, roomName, 0L, 0L, startsAt, finishesAt);
+    }
+
+    public ScheduleEntry(long id, String roomName, Long doctorId, Long patientId,
+                         LocalDateTime startsAt, LocalDateTime finishesAt){
+        this.id = id;
+        this.roomName = roomName;
+        this.doctorId = doctorId == null ? 0 : doctorId;
+        this.patientId = patientId == null ? 0 : patientId;
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+    }
+
+    public static ScheduleEntry of(Appointment appointment){
+        String roomName = appointment.getRoom() == null ? null : appointment.getRoom().getRoomName();
+        long doctorId = appointment.getDoctor() == null ? 0 : appointment.getDoctor().getId();
+        long patientId = appointment.getPatient() == null ? 0 : appointment.getPatient().getId();
+        return new ScheduleEntry(appointment.getId(), roomName, doctorId, patientId,
+                appointment.getStartsAt(), appointment.getFinishesAt());
+    }
+
+    // Sentinel used to position searches inside the sorted schedules
+    static ScheduleEntry probe(LocalDateTime startsAt, long id){
+        return new ScheduleEntry(id, null, startsAt, startsAt);
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+
+    public long getDoctorId(){
+        return this.doctorId;
+    }
+
+    public long getPatientId(){
+        return this.patientId;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    public boolean overlaps(LocalDateTime from, LocalDateTime to){
+        return this.startsAt.isBefore(to) && from.isBefore(this.finishesAt);
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.demo.schedule;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.repositories.AppointmentRepository;
+
+/**
+ * In-memory index of the appointments of every room, doctor and patient,
+ * each sorted by start time.
+ *
+ * Checking a new appointment is one range scan per resource it uses, and
+ * only touches the schedules of that room, doctor and patient. Every room
+ * also has an off-heap SlotBitmap; when its bits show the time free the
+ * room scan is skipped.
+ *
+ * Only the INDEX and LANES booking modes read it, so only they create it;
+ * in the other modes the table is not loaded at startup and writes do not
+ * keep it up to date.
+ */
+@Component
+@ConditionalOnExpression("'${booking.mode:query}'.equalsIgnoreCase('index') or '${booking.mode:query}'.equalsIgnoreCase('lanes')")
+public class ScheduleIndex {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    private final ConcurrentMap<String, ResourceSchedule> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SlotBitmap> calendars = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, ResourceSchedule> doctors = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, ResourceSchedule> patients = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, ScheduleEntry> entries = new ConcurrentHashMap<>();
+
+    // Load the stored appointments once the application is up
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild(){
+        clear();
+        appointmentRepository.findAllScheduleEntries().forEach(this::add);
+    }
+
+    public void add(Appointment appointment){
+        add(ScheduleEntry.of(appointment));
+    }
+
+    public void add(ScheduleEntry entry){
+        ScheduleEntry previous = entries.put(entry.getId(), entry);
+        if (previous != null){
+            unlink(previous);
+        }
+        if (entry.getRoomName() != null){
+            SlotBitmap calendar = calendars.computeIfAbsent(entry.getRoomName(), name -> new SlotBitmap());
+            // The bits and the room schedule change together, so the bits never show a booked slot as free
+            synchronized (calendar){
+                calendar.mark(entry.getStartsAt(), entry.getFinishesAt());
+                rooms.computeIfAbsent(entry.getRoomName(), name -> new ResourceSchedule()).add(entry);
+            }
+        }
+        if (entry.getDoctorId() != 0){
+            doctors.computeIfAbsent(entry.getDoctorId(), id -> new ResourceSchedule()).add(entry);
+        }
+        if (entry.getPatientId() != 0){
+            patients.computeIfAbsent(entry.getPatientId(), id -> new ResourceSchedule()).add(entry);
+        }
+    }
+
+    // Returns the entry, or null when the id is not indexed
+    public ScheduleEntry get(long id){
+        return entries.get(id);
+    }
+
+    // Returns the removed entry, or null when the id was not indexed
+    public ScheduleEntry remove(long id){
+        ScheduleEntry entry = entries.remove(id);
+        if (entry != null){
+            unlink(entry);
+        }
+        return entry;
+    }
+
+    // Removes every entry matching the filter, leaving the others in place
+    public void removeIf(Predicate<ScheduleEntry> filter){
+        for (ScheduleEntry entry : entries.values()){
+            if (filter.test(entry)){
+                remove(entry.getId());
+            }
+        }
+    }
+
+    public void clear(){
+        entries.clear();
+        rooms.clear();
+        calendars.clear();
+        doctors.clear();
+        patients.clear();
+    }
+
+    public int size(){
+        return entries.size();
+    }
+
+    /**
+     * Returns, for each resource of the appointment, the first stored
+     * appointment holding it at the same time. Doctors and patients that
+     * are not stored yet (id 0) cannot conflict.
+     */
+    public List<ScheduleConflict> findConflicts(Appointment appointment){
+        ScheduleEntry entry = ScheduleEntry.of(appointment);
+        List<ScheduleConflict> conflicts = new ArrayList<>();
+        if (entry.getRoomName() != null && !isRoomFreeBySlots(entry.getRoomName(), entry.getStartsAt(), entry.getFinishesAt())){
+            addFirst(conflicts, ResourceType.ROOM, rooms.get(entry.getRoomName()), entry);
+        }
+        if (entry.getDoctorId() != 0){
+            addFirst(conflicts, ResourceType.DOCTOR, doctors.get(entry.getDoctorId()), entry);
+        }
+        if (entry.getPatientId() != 0){
+            addFirst(conflicts, ResourceType.PATIENT, patients.get(entry.getPatientId()), entry);
+        }
+        return conflicts;
+    }
+
+    /**
+     * Returns the entries of the room (of every room when null) finished by
+     * before (at any time when null).
+     */
+    public List<ScheduleEntry> findFinishedBy(String roomName, LocalDateTime before){
+        if (roomName == null){
+            return entries.values().stream()
+                    .filter(entry -> before == null || !entry.getFinishesAt().isAfter(before))
+                    .collect(Collectors.toList());
+        }
+        ResourceSchedule schedule = rooms.get(roomName);
+        if (schedule == null){
+            return Collections.emptyList();
+        }
+        return schedule.finishedBy(before == null ? LocalDateTime.MAX : before);
+    }
+
+    /**
+     * Returns the entries of the room that overlap [from, to), in start order.
+     */
+    public List<ScheduleEntry> findRoomOverlaps(String roomName, LocalDateTime from, LocalDateTime to){
+        return overlapping(rooms.get(roomName), from, to);
+    }
+
+    public List<ScheduleEntry> findDoctorOverlaps(long doctorId, LocalDateTime from, LocalDateTime to){
+        return overlapping(doctors.get(doctorId), from, to);
+    }
+
+    public List<ScheduleEntry> findPatientOverlaps(long patientId, LocalDateTime from, LocalDateTime to){
+        return overlapping(patients.get(patientId), from, to);
+    }
+
+    private boolean isRoomFreeBySlots(String roomName, LocalDateTime from, LocalDateTime to){
+        SlotBitmap calendar = calendars.get(roomName);
+        if (calendar == null){
+            return true;
+        }
+        synchronized (calendar){
+            return calendar.isFree(from, to);
+        }
+    }
+
+    private static List<ScheduleEntry> overlapping(ResourceSchedule schedule, LocalDateTime from, LocalDateTime to){
+        return schedule == null ? Collections.emptyList() : schedule.overlapping(from, to);
+    }
+
+    private static void addFirst(List<ScheduleConflict> conflicts, ResourceType resource,
+                                 ResourceSchedule schedule, ScheduleEntry entry){
+        List<ScheduleEntry> overlapping = overlapping(schedule, entry.getStartsAt(), entry.getFinishesAt());
+        if (!overlapping.isEmpty()){
+            conflicts.add(new ScheduleConflict(resource, overlapping.get(0).getId()));
+        }
+    }
+
+    private void unlink(ScheduleEntry entry){
+        if (entry.getRoomName() != null){
+            unlinkRoom(entry);
+        }
+        unlink(doctors.get(entry.getDoctorId()), entry);
+        unlink(patients.get(entry.getPatientId()), entry);
+    }
+
+    // Clears the slots of the entry, then marks again those still used by its neighbours
+    private void unlinkRoom(ScheduleEntry entry){
+        SlotBitmap calendar = calendars.get(entry.getRoomName());
+        ResourceSchedule schedule = rooms.get(entry.getRoomName());
+        if (calendar == null || schedule == null){
+            unlink(schedule, entry);
+            return;
+        }
+        synchronized (calendar){
+            schedule.remove(entry);
+            calendar.clear(entry.getStartsAt(), entry.getFinishesAt());
+            LocalDateTime from = entry.getStartsAt().minusMinutes(SlotBitmap.SLOT_MINUTES);
+            LocalDateTime to = entry.getFinishesAt().plusMinutes(SlotBitmap.SLOT_MINUTES);
+            for (ScheduleEntry neighbour : schedule.overlapping(from, to)){
+                calendar.mark(neighbour.getStartsAt(), neighbour.getFinishesAt());
+            }
+        }
+    }
+
+    private static void unlink(ResourceSchedule schedule, ScheduleEntry entry){
+        if (schedule != null){
+            schedule.remove(entry);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo.schedule;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * A free time span [startsAt, finishesAt), in the same format as the
+ * appointments.
+ */
+public class Slot {
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime finishesAt;
+
+    public Slot(LocalDateTime startsAt, LocalDateTime finishesAt){
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    @Override
+    public boolean equals(Object other){
+        if (!(other instanceof Slot)){
+            return false;
+        }
+        Slot slot = (Slot) other;
+        return startsAt.equals(slot.startsAt) && finishesAt.equals(slot.finishesAt);
+    }
+
+    @Override
+    public int hashCode(){
+        return 31 * startsAt.hashCode() + finishesAt.hashCode();
+    }
+
+    @Override
+    public String toString(){
+        return "[" + startsAt + ", " + finishesAt + ")";
+    }
+}
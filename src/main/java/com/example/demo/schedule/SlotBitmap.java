@@ -0,0 +1,125 @@
+package com.example.demo.schedule;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Off-heap calendar of one resource: one bit per SLOT_MINUTES slot, set
+ * when an appointment covers any part of the slot.
+ *
+ * Bits live in direct buffers of PAGE_DAYS days (1152 bytes each),
+ * allocated when a page is first marked, so an empty calendar costs
+ * nothing and the bits stay out of the garbage collected heap. Checking
+ * or marking a range works on whole 64-slot words.
+ *
+ * A slot only partly covered is seen as busy, so isFree may be false for
+ * a range that is free to the minute; it is never true for a busy one.
+ * Not thread safe.
+ */
+public class SlotBitmap {
+
+    public static final int SLOT_MINUTES = 5;
+
+    private static final int PAGE_DAYS = 32;
+    private static final int SLOTS_PER_PAGE = PAGE_DAYS * 24 * 60 / SLOT_MINUTES;
+    private static final int WORDS_PER_PAGE = SLOTS_PER_PAGE / Long.SIZE;
+
+    private final Map<Long, LongBuffer> pages = new HashMap<>();
+
+    public void mark(LocalDateTime from, LocalDateTime to){
+        long first = slotOf(from);
+        long end = slotAfter(to);
+        for (long slot = first; slot < end; slot = nextWord(slot)){
+            LongBuffer page = pages.computeIfAbsent(Math.floorDiv(slot, SLOTS_PER_PAGE), p -> allocate());
+            int word = wordOf(slot);
+            page.put(word, page.get(word) | mask(slot, end));
+        }
+    }
+
+    public void clear(LocalDateTime from, LocalDateTime to){
+        long first = slotOf(from);
+        long end = slotAfter(to);
+        for (long slot = first; slot < end; slot = nextWord(slot)){
+            LongBuffer page = pages.get(Math.floorDiv(slot, SLOTS_PER_PAGE));
+            if (page != null){
+                int word = wordOf(slot);
+                page.put(word, page.get(word) & ~mask(slot, end));
+            }
+        }
+    }
+
+    public void clearAll(){
+        pages.clear();
+    }
+
+    /**
+     * True when no slot touching [from, to) is marked.
+     */
+    public boolean isFree(LocalDateTime from, LocalDateTime to){
+        return nextMarked(slotOf(from), slotAfter(to)) < 0;
+    }
+
+    // First marked slot in [slot, end), or -1
+    private long nextMarked(long slot, long end){
+        while (slot < end){
+            LongBuffer page = pages.get(Math.floorDiv(slot, SLOTS_PER_PAGE));
+            if (page == null){
+                slot = (Math.floorDiv(slot, SLOTS_PER_PAGE) + 1) * SLOTS_PER_PAGE;
+                continue;
+            }
+            long bits = page.get(wordOf(slot)) & mask(slot, end);
+            if (bits != 0){
+                return slot - bitOf(slot) + Long.numberOfTrailingZeros(bits);
+            }
+            slot = nextWord(slot);
+        }
+        return -1;
+    }
+
+    private static LongBuffer allocate(){
+        return ByteBuffer.allocateDirect(WORDS_PER_PAGE * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    // Bits of the word of slot from slot up to end (exclusive)
+    private static long mask(long slot, long end){
+        long mask = -1L << bitOf(slot);
+        long wordEnd = nextWord(slot);
+        if (end < wordEnd){
+            mask &= -1L >>> (wordEnd - end);
+        }
+        return mask;
+    }
+
+    private static long nextWord(long slot){
+        return slot - bitOf(slot) + Long.SIZE;
+    }
+
+    private static int bitOf(long slot){
+        return (int) Math.floorMod(slot, (long) Long.SIZE);
+    }
+
+    private static int wordOf(long slot){
+        return (int) (Math.floorMod(slot, (long) SLOTS_PER_PAGE) / Long.SIZE);
+    }
+
+    private static long minuteOf(LocalDateTime time){
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60L);
+    }
+
+    // Slot containing time
+    private static long slotOf(LocalDateTime time){
+        return Math.floorDiv(minuteOf(time), (long) SLOT_MINUTES);
+    }
+
+    // First slot starting at time or later
+    private static long slotAfter(LocalDateTime time){
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        long slotSeconds = SLOT_MINUTES * 60L;
+        return Math.floorDiv(seconds + slotSeconds - 1, slotSeconds);
+    }
+}
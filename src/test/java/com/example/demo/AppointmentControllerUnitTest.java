@@ -1,7 +1,9 @@
 package com.example.demo;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -15,35 +17,85 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.*;
 
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
+import com.example.demo.booking.AppointmentRequest;
+import com.example.demo.booking.BatchBookingService;
+import com.example.demo.booking.BookingDispatcher;
+import com.example.demo.booking.BookingService;
+import com.example.demo.booking.DeletionService;
+import com.example.demo.controllers.NdjsonStreams;
 import com.example.demo.controllers.AppointmentController;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.schedule.AvailabilityService;
+import com.example.demo.schedule.RoomDaySchedules;
+import com.example.demo.schedule.ScheduleEntry;
+import com.example.demo.schedule.ScheduleIndex;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @WebMvcTest(AppointmentController.class)
+@Import({AvailabilityService.class, BatchBookingService.class, BookingDispatcher.class, BookingService.class})
 class AppointmentControllerUnitTest{
 
+    @MockBean
+    private NdjsonStreams ndjsonStreams;
+
     @MockBean
     private AppointmentRepository appointmentRepository;
 
+    @MockBean
+    private RoomRepository roomRepository;
+
+    @MockBean
+    private DoctorRepository doctorRepository;
+
+    @MockBean
+    private PatientRepository patientRepository;
+
+    // Backs the EntityManager of BookingService
+    @MockBean
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private BulkPersister bulkPersister;
+
+    @MockBean
+    private DeletionService deletionService;
+
+    @MockBean
+    private TableChanges tableChanges;
+
+    @MockBean
+    private RoomDaySchedules roomDaySchedules;
+
     @Autowired 
     private MockMvc mockMvc;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    void tables(){
+        when(tableChanges.version(any())).thenReturn(new TableVersions(0, 0));
+    }
+
     @Test
     void shouldCreateAppointment() throws Exception {
         
@@ -84,6 +136,25 @@ class AppointmentControllerUnitTest{
 
     }
 
+    @Test
+    void shouldNotCreateIncompleteAppointmentByReference() throws Exception {
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        AppointmentRequest noPatient = new AppointmentRequest("Dermatology", 1L, null, startsAt, finishesAt);
+        AppointmentRequest backwards = new AppointmentRequest("Dermatology", 1L, 1L, finishesAt, startsAt);
+
+        mockMvc.perform(post("/api/appointment/by-reference").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(noPatient)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/appointment/by-reference").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(backwards)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void shouldCreateOneAppointmentOutOfTwoConflictDate() throws Exception{
         Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
@@ -108,13 +179,13 @@ class AppointmentControllerUnitTest{
 
 
 
-        List<Appointment> appointments = new ArrayList<Appointment>();
-        appointments.add(appointment);
-        
-        when(appointmentRepository.findAll()).thenReturn(appointments);
+        when(appointmentRepository.findOverlappingIds(eq(room.getRoomName()), eq(startsAt), eq(finishesAt), any()))
+                .thenReturn(Collections.singletonList(1L));
         mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(appointment2)))
-                .andExpect(status().isNotAcceptable());
+                .andExpect(status().isNotAcceptable())
+                .andExpect(jsonPath("$[0].resource").value("ROOM"))
+                .andExpect(jsonPath("$[0].appointmentId").value("1"));
                 
 
     }
@@ -158,10 +229,62 @@ class AppointmentControllerUnitTest{
 
     }
     
+    @Test
+    void shouldCreateAppointmentsInBatch() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt = LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        List<Appointment> appointments = Arrays.asList(
+                new Appointment(patient, doctor, room, startsAt, finishesAt),
+                new Appointment(patient, doctor, room, startsAt.plusMinutes(30), finishesAt.plusMinutes(30)),
+                new Appointment(patient, doctor, room, startsAt, startsAt),
+                new Appointment(patient, doctor, room, finishesAt, finishesAt.plusHours(1)));
+
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointments)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$[1].status").value("CONFLICT"))
+                .andExpect(jsonPath("$[2].status").value("INVALID"))
+                .andExpect(jsonPath("$[3].status").value("ACCEPTED"));
+    }
+
+    @Test
+    void shouldNotCreateAppointmentsFromAnObject() throws Exception {
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"startsAt\": 12"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldNotCreateAppointmentsFromAMalformedArray() throws Exception {
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[{}, 42]"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[{}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[{}] {}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void shouldGetNoAppointments() throws Exception{
         List<Appointment> appointments = new ArrayList<Appointment>();
-        when(appointmentRepository.findAll()).thenReturn(appointments);
+        when(appointmentRepository.findAllWithAssociations()).thenReturn(appointments);
         mockMvc.perform(get("/api/appointments"))
                 .andExpect(status().isNoContent());
                 
@@ -190,12 +313,25 @@ class AppointmentControllerUnitTest{
         appointments.add(appointment);
         appointments.add(appointment2);
 
-        when(appointmentRepository.findAll()).thenReturn(appointments);
+        when(appointmentRepository.findAllWithAssociations()).thenReturn(appointments);
         mockMvc.perform(get("/api/appointments"))
                 .andExpect(status().isOk());
                 
     }
 
+    @Test
+    void shouldGetAppointmentSummaries() throws Exception{
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 0);
+        when(appointmentRepository.findAllSummaries()).thenReturn(Arrays.asList(
+                new AppointmentSummary(1, "Dermatology", 2L, 3L, startsAt, startsAt.plusHours(1))));
+
+        mockMvc.perform(get("/api/appointments").param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].roomName").value("Dermatology"))
+                .andExpect(jsonPath("$[0].doctorId").value("2"))
+                .andExpect(jsonPath("$[0].finishesAt").value("20:00 24/04/2023"));
+    }
+
     @Test
     void shouldGetAppointmentById() throws Exception{
         Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
@@ -218,7 +354,7 @@ class AppointmentControllerUnitTest{
         assertThat(opt.get().getId()).isEqualTo(appointment.getId());
         assertThat(appointment.getId()).isEqualTo(1);
 
-        when(appointmentRepository.findById(appointment.getId())).thenReturn(opt);
+        when(appointmentRepository.findWithAssociationsById(appointment.getId())).thenReturn(opt);
         mockMvc.perform(get("/api/appointments/" + appointment.getId()))
                 .andExpect(status().isOk());
                 
@@ -254,7 +390,7 @@ class AppointmentControllerUnitTest{
         assertThat(opt.get().getId()).isEqualTo(appointment.getId());
         assertThat(appointment.getId()).isEqualTo(1);
 
-        when(appointmentRepository.findById(appointment.getId())).thenReturn(opt);
+        when(deletionService.deleteAppointment(appointment.getId())).thenReturn(true);
         mockMvc.perform(delete("/api/appointments/" + appointment.getId()))
                 .andExpect(status().isOk());
                 
@@ -268,11 +404,202 @@ class AppointmentControllerUnitTest{
                 
     }
 
+    @Test
+    void shouldGetAppointmentsOfARoomOnADay() throws Exception{
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"),
+                nine, nine.plusHours(1));
+        when(roomDaySchedules.appointments("Dermatology", LocalDate.of(2023, 4, 24)))
+                .thenReturn(Arrays.asList(appointment));
+
+        mockMvc.perform(get("/api/appointments").param("room", "Dermatology").param("date", "24/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].startsAt").value("09:00 24/04/2023"));
+
+        mockMvc.perform(get("/api/appointments").param("room", "Dermatology").param("date", "25/04/2023"))
+                .andExpect(status().isNoContent());
+    }
+
     @Test
     void shouldDeleteAllAppointments() throws Exception{
         mockMvc.perform(delete("/api/appointments"))
                 .andExpect(status().isOk());
+        verify(deletionService).deleteAllAppointments();
                 
     }
+
+    @Test
+    void shouldDeleteAppointmentsOfARoomBeforeATime() throws Exception{
+        mockMvc.perform(delete("/api/appointments").param("room", "Dermatology").param("before", "09:00 24/04/2023"))
+                .andExpect(status().isOk());
+        verify(deletionService).deleteAppointments("Dermatology", LocalDateTime.of(2023, 4, 24, 9, 0));
+
+        mockMvc.perform(delete("/api/appointments").param("room", "Dermatology"))
+                .andExpect(status().isOk());
+        verify(deletionService).deleteAppointments("Dermatology", null);
+    }
+
+    @Test
+    void shouldGetSlotsWhereRoomDoctorAndPatientAreAllFree() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+        LocalDateTime from = LocalDateTime.of(2023, 4, 24, 9, 0);
+        LocalDateTime to = from.plusHours(4);
+
+        when(roomRepository.findById("Dermatology")).thenReturn(Optional.of(room));
+        when(doctorRepository.findById(1L)).thenReturn(Optional.of(doctor));
+        when(patientRepository.findById(2L)).thenReturn(Optional.of(patient));
+        // Room busy 9-10, doctor busy 10:30-11:30 elsewhere, patient busy 12-12:30 elsewhere
+        when(appointmentRepository.findRoomScheduleEntries("Dermatology", from, to)).thenReturn(Arrays.asList(
+                new ScheduleEntry(10, "Dermatology", 3L, 4L, from, from.plusMinutes(60))));
+        when(appointmentRepository.findDoctorScheduleEntries(1L, from, to)).thenReturn(Arrays.asList(
+                new ScheduleEntry(11, "Oncology", 1L, 4L, from.plusMinutes(90), from.plusMinutes(150))));
+        when(appointmentRepository.findPatientScheduleEntries(2L, from, to)).thenReturn(Arrays.asList(
+                new ScheduleEntry(12, "Pediatric", 3L, 2L, from.plusMinutes(180), from.plusMinutes(210))));
+
+        mockMvc.perform(get("/api/availability").param("room", "Dermatology").param("doctor", "1").param("patient", "2")
+                .param("duration", "30").param("from", "09:00 24/04/2023").param("to", "13:00 24/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].startsAt").value("10:00 24/04/2023"))
+                .andExpect(jsonPath("$[1].startsAt").value("11:30 24/04/2023"))
+                .andExpect(jsonPath("$[2].startsAt").value("12:30 24/04/2023"));
+
+        mockMvc.perform(get("/api/availability").param("room", "Dermatology").param("doctor", "1").param("patient", "2")
+                .param("duration", "60").param("from", "09:00 24/04/2023").param("to", "13:00 24/04/2023"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/availability").param("room", "Dermatology").param("doctor", "1").param("patient", "2")
+                .param("from", "13:00 24/04/2023").param("to", "09:00 24/04/2023"))
+                .andExpect(status().isBadRequest());
+    }
+
 }
 
+@WebMvcTest(AppointmentController.class)
+@Import({AvailabilityService.class, BatchBookingService.class, BookingDispatcher.class, BookingService.class, DeletionService.class,
+        ScheduleIndex.class})
+@TestPropertySource(properties = "booking.mode=index")
+class AppointmentControllerIndexModeUnitTest{
+
+    @MockBean
+    private NdjsonStreams ndjsonStreams;
+
+    @MockBean
+    private AppointmentRepository appointmentRepository;
+
+    @MockBean
+    private RoomRepository roomRepository;
+
+    @MockBean
+    private DoctorRepository doctorRepository;
+
+    @MockBean
+    private PatientRepository patientRepository;
+
+    // Backs the EntityManager of BookingService
+    @MockBean
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private BulkPersister bulkPersister;
+
+    @MockBean
+    private TableChanges tableChanges;
+
+    @MockBean
+    private RoomDaySchedules roomDaySchedules;
+
+    @Autowired 
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ScheduleIndex scheduleIndex;
+
+    @BeforeEach
+    void clearSchedule(){
+        scheduleIndex.clear();
+    }
+
+    @Test
+    void shouldCreateOneAppointmentOutOfTwoConflictDate() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        Appointment appointment = new Appointment(patient, doctor, room,
+                LocalDateTime.parse("19:30 24/04/2023", formatter), LocalDateTime.parse("20:30 24/04/2023", formatter));
+        Appointment appointment2 = new Appointment(patient, doctor, room,
+                LocalDateTime.parse("20:00 24/04/2023", formatter), LocalDateTime.parse("21:00 24/04/2023", formatter));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment2)))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void shouldNotBookADoctorInTwoRoomsAtOnce() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        doctor.setId(7);
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        Appointment existing = new Appointment(patient, doctor, new Room("Dermatology"),
+                LocalDateTime.parse("19:00 24/04/2023", formatter), LocalDateTime.parse("20:00 24/04/2023", formatter));
+        existing.setId(1);
+        scheduleIndex.add(existing);
+
+        Appointment appointment = new Appointment(patient2, doctor, new Room("Oncology"),
+                LocalDateTime.parse("19:30 24/04/2023", formatter), LocalDateTime.parse("20:30 24/04/2023", formatter));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isNotAcceptable())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].resource").value("DOCTOR"))
+                .andExpect(jsonPath("$[0].appointmentId").value("1"));
+    }
+
+    @Test
+    void shouldCreateAppointmentAfterConflictingOneIsDeleted() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        Appointment existing = new Appointment(patient, doctor, room,
+                LocalDateTime.parse("19:00 24/04/2023", formatter), LocalDateTime.parse("21:00 24/04/2023", formatter));
+        existing.setId(1);
+        scheduleIndex.add(existing);
+
+        Appointment appointment = new Appointment(patient, doctor, room,
+                LocalDateTime.parse("19:30 24/04/2023", formatter), LocalDateTime.parse("20:30 24/04/2023", formatter));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isNotAcceptable());
+
+        when(appointmentRepository.deleteRowById(existing.getId())).thenReturn(1);
+        mockMvc.perform(delete("/api/appointments/" + existing.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.data.domain.PageRequest;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
@@ -257,5 +258,29 @@ class AppointmentJpaUnitTest {
         Iterable appointments = repoAppointments.findAll();
         assertThat(appointments).isEmpty();
     }
-    
+
+    private static final PageRequest FIRST = PageRequest.of(0, 1);
+
+    @Test
+    void should_find_overlapping_appointments_in_the_same_room_only(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 0);
+        LocalDateTime finishesAt = LocalDateTime.of(2023, 4, 24, 20, 0);
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+        entityManager.persist(new Appointment(patient, doctor, room1, startsAt, finishesAt));
+
+        assertThat(repoAppointments.findOverlappingIds("Dermatology", startsAt.plusMinutes(30), finishesAt.plusMinutes(30), FIRST)).isNotEmpty();
+        assertThat(repoAppointments.findOverlappingIds("Dermatology", startsAt.plusMinutes(15), finishesAt.minusMinutes(15), FIRST)).isNotEmpty();
+        assertThat(repoAppointments.findOverlappingIds("Dermatology", finishesAt, finishesAt.plusHours(1), FIRST)).isEmpty();
+        assertThat(repoAppointments.findOverlappingIds("Oncology", startsAt, finishesAt, FIRST)).isEmpty();
+    }
+
 }
@@ -0,0 +1,435 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.example.demo.booking.BookingService;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.schedule.RoomDaySchedules;
+import com.example.demo.schedule.ScheduleIndex;
+
+/**
+ * Reading appointments must cost one statement however many patients,
+ * doctors and rooms they reference, and booking by reference must not
+ * load any of them.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class AppointmentStatementCountTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    ObjectProvider<ScheduleIndex> scheduleIndex;
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    RoomDaySchedules roomDaySchedules;
+
+    private Statistics statistics;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    private long firstId;
+    private long doctorId;
+    private long patientId;
+
+    @BeforeEach
+    void setup(){
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < 5; i++){
+            appointments.add(new Appointment(new Patient("Patient", String.valueOf(i), 37, i + "@email.com"),
+                    new Doctor("Doctor", String.valueOf(i), 40, i + "@hospital.accwe"),
+                    new Room("Room " + i), nine, nine.plusHours(1)));
+        }
+        Appointment first = appointmentRepository.saveAll(appointments).get(0);
+        firstId = first.getId();
+        doctorId = first.getDoctor().getId();
+        patientId = first.getPatient().getId();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void cleanup(){
+        appointmentRepository.deleteAll();
+        roomRepository.deleteAll();
+        doctorRepository.deleteAll();
+        patientRepository.deleteAll();
+        roomDaySchedules.evictAll();
+    }
+
+    @Test
+    void should_list_appointments_with_one_statement() throws Exception {
+        mockMvc.perform(get("/api/appointments"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5))
+                .andExpect(jsonPath("$[4].doctor.lastName").value("4"))
+                .andExpect(jsonPath("$[4].room.roomName").value("Room 4"));
+
+        // The list, after the table versions behind its ETag
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void should_get_an_appointment_by_id_with_one_statement() throws Exception {
+        mockMvc.perform(get("/api/appointments/" + firstId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patient.lastName").value("0"));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_page_appointments_with_one_statement() throws Exception {
+        mockMvc.perform(get("/api/appointments").param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[2].doctor.lastName").value("2"));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_list_summaries_without_loading_entities() throws Exception {
+        mockMvc.perform(get("/api/appointments").param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5))
+                .andExpect(jsonPath("$[0].id").value(String.valueOf(firstId)))
+                .andExpect(jsonPath("$[0].roomName").value("Room 0"))
+                .andExpect(jsonPath("$[0].startsAt").value("09:00 24/04/2023"))
+                .andExpect(jsonPath("$[0].doctor").doesNotExist());
+
+        // The table versions, then the summaries
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void should_stream_appointments_with_one_statement() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/appointments").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_build_the_schedule_index_in_query_mode(){
+        // Nothing reads it, so startup and writes pay nothing for it
+        assertThat(scheduleIndex.getIfAvailable()).isNull();
+    }
+
+    @Test
+    void should_book_by_reference_without_loading_entities() throws Exception {
+        mockMvc.perform(post("/api/appointment/by-reference").contentType(MediaType.APPLICATION_JSON)
+                        .content(byReference("Room 0", doctorId, patientId, "10:00 24/04/2023", "11:00 24/04/2023")))
+                .andExpect(status().isOk());
+
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+        assertThat(appointmentRepository.count()).isEqualTo(6);
+    }
+
+    @Test
+    void should_reject_a_conflict_by_reference() throws Exception {
+        mockMvc.perform(post("/api/appointment/by-reference").contentType(MediaType.APPLICATION_JSON)
+                        .content(byReference("Room 0", doctorId, patientId, "09:30 24/04/2023", "10:30 24/04/2023")))
+                .andExpect(status().isNotAcceptable())
+                .andExpect(jsonPath("$[0].appointmentId").value(String.valueOf(firstId)));
+
+        assertThat(statistics.getEntityInsertCount()).isZero();
+    }
+
+    @Test
+    void should_not_find_an_unknown_reference() throws Exception {
+        mockMvc.perform(post("/api/appointment/by-reference").contentType(MediaType.APPLICATION_JSON)
+                        .content(byReference("Room 0", -1, patientId, "10:00 24/04/2023", "11:00 24/04/2023")))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/appointment/by-reference").contentType(MediaType.APPLICATION_JSON)
+                        .content(byReference("No such room", doctorId, patientId, "10:00 24/04/2023", "11:00 24/04/2023")))
+                .andExpect(status().isNotFound());
+
+        assertThat(appointmentRepository.count()).isEqualTo(5);
+    }
+
+    @Test
+    void should_store_many_appointments_in_jdbc_batches(){
+        LocalDateTime ten = LocalDateTime.of(2023, 4, 24, 10, 0);
+        Doctor doctor = new Doctor();
+        doctor.setId(doctorId);
+        Patient patient = new Patient();
+        patient.setId(patientId);
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < 120; i++){
+            Patient newPatient = new Patient("Patient", "New " + i, 30, i + "@new.com");
+            appointments.add(new Appointment(i % 2 == 0 ? patient : newPatient, doctor, new Room("Room 0"),
+                    ten.plusHours(i), ten.plusHours(i + 1)));
+        }
+
+        bookingService.storeAll(appointments);
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(180);
+        // The room lookup and one statement per batch instead of one per row
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(20);
+        assertThat(appointmentRepository.count()).isEqualTo(125);
+    }
+
+    @Test
+    void should_delete_all_doctors_and_their_appointments_without_loading_them() throws Exception {
+        mockMvc.perform(delete("/api/doctors"))
+                .andExpect(status().isOk());
+
+        // Two deletes; the schedule index drops the entries without reloading
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(doctorRepository.count()).isZero();
+        assertThat(appointmentRepository.count()).isZero();
+        assertThat(patientRepository.count()).isEqualTo(5);
+        assertThat(roomRepository.count()).isEqualTo(5);
+    }
+
+    @Test
+    void should_delete_the_appointments_of_a_room_before_a_time() throws Exception {
+        mockMvc.perform(delete("/api/appointments").param("room", "Room 1").param("before", "10:00 24/04/2023"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/appointments").param("room", "Room 2").param("before", "09:59 24/04/2023"))
+                .andExpect(status().isOk());
+
+        // One DELETE each, without reading the rows first
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(appointmentRepository.count()).isEqualTo(4);
+        assertThat(roomRepository.findByRoomName("Room 1")).isPresent();
+    }
+
+    @Test
+    void should_delete_an_appointment_by_id_with_one_statement() throws Exception {
+        mockMvc.perform(delete("/api/appointments/" + firstId))
+                .andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        mockMvc.perform(delete("/api/appointments/" + firstId))
+                .andExpect(status().isNotFound());
+        assertThat(appointmentRepository.count()).isEqualTo(4);
+    }
+
+    @Test
+    void should_not_delete_a_doctor_with_appointments() throws Exception {
+        mockMvc.perform(delete("/api/doctors/" + doctorId))
+                .andExpect(status().isConflict());
+
+        assertThat(doctorRepository.existsById(doctorId)).isTrue();
+    }
+
+    @Test
+    void should_publish_the_second_level_cache_hit_rates() throws Exception {
+        mockMvc.perform(get("/api/doctors")).andExpect(status().isOk());
+
+        assertThat(meterRegistry.find("hibernate.second.level.cache.requests").meters()).isNotEmpty();
+        assertThat(meterRegistry.find("hibernate.cache.query.requests").meters()).isNotEmpty();
+    }
+
+    @Test
+    void should_serve_a_read_appointment_from_the_entity_cache_until_deleted() throws Exception {
+        mockMvc.perform(get("/api/appointments/" + firstId)).andExpect(status().isOk());
+        statistics.clear();
+
+        mockMvc.perform(get("/api/appointments/" + firstId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.doctor.lastName").value("0"));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "appointments").tag("result", "hit")
+                .functionCounter().count()).isPositive();
+
+        mockMvc.perform(delete("/api/appointments/" + firstId)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/appointments/" + firstId)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void should_evict_only_the_room_days_a_booking_touches() throws Exception {
+        mockMvc.perform(get("/api/appointments").param("room", "Room 0").param("date", "24/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+        mockMvc.perform(get("/api/appointments").param("room", "Room 1").param("date", "24/04/2023"))
+                .andExpect(status().isOk());
+        statistics.clear();
+
+        // Another room, then another day of the same room
+        mockMvc.perform(post("/api/appointment/by-reference").contentType(MediaType.APPLICATION_JSON)
+                        .content(byReference("Room 1", doctorId, patientId, "12:00 24/04/2023", "13:00 24/04/2023")))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/appointment/by-reference").contentType(MediaType.APPLICATION_JSON)
+                        .content(byReference("Room 0", doctorId, patientId, "12:00 25/04/2023", "13:00 25/04/2023")))
+                .andExpect(status().isOk());
+        long written = statistics.getPrepareStatementCount();
+        mockMvc.perform(get("/api/appointments").param("room", "Room 0").param("date", "24/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+        // Only the table versions behind the ETag
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(written + 1);
+
+        mockMvc.perform(get("/api/appointments").param("room", "Room 1").param("date", "24/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(written + 3);
+
+        mockMvc.perform(delete("/api/appointments/" + firstId)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/appointments").param("room", "Room 0").param("date", "24/04/2023"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void should_read_doctors_again_from_the_second_level_cache() throws Exception {
+        mockMvc.perform(get("/api/doctors/" + doctorId)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/doctors")).andExpect(status().isOk());
+        statistics.clear();
+
+        mockMvc.perform(get("/api/doctors/" + doctorId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastName").value("0"));
+        mockMvc.perform(get("/api/doctors"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5));
+
+        // The id read comes from the entity cache, the list from the query and second-level caches;
+        // only the table versions behind its ETag are read
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isPositive();
+    }
+
+    @Test
+    void should_answer_an_unchanged_poll_from_the_table_versions() throws Exception {
+        String etag = mockMvc.perform(get("/api/appointments"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+        statistics.clear();
+
+        mockMvc.perform(get("/api/appointments").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        mockMvc.perform(post("/api/appointment/by-reference").contentType(MediaType.APPLICATION_JSON)
+                        .content(byReference("Room 1", doctorId, patientId, "12:00 24/04/2023", "13:00 24/04/2023")))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/appointments").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(6))
+                .andExpect(header().string("ETag", not(etag)));
+    }
+
+    @Test
+    void should_not_answer_304_after_a_write_committed_by_another_instance() throws Exception {
+        String etag = mockMvc.perform(get("/api/doctors"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // What another instance's write leaves in the shared database, unseen by this one's listeners
+        jdbcTemplate.update("update table_version set changes = changes + 1 where table_name = 'Doctor'");
+
+        mockMvc.perform(get("/api/doctors").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)));
+    }
+
+    @Test
+    void should_write_ids_past_2_to_the_53_as_exact_json_strings() throws Exception {
+        assertThat(firstId).isGreaterThan(1L << 53);
+
+        mockMvc.perform(get("/api/appointments/" + firstId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(String.valueOf(firstId)))
+                .andExpect(jsonPath("$.doctor.id").value(String.valueOf(doctorId)))
+                .andExpect(jsonPath("$.patient.id").value(String.valueOf(patientId)));
+        mockMvc.perform(get("/api/appointments").param("view", "summary"))
+                .andExpect(jsonPath("$[0].id").value(String.valueOf(firstId)))
+                .andExpect(jsonPath("$[0].doctorId").value(String.valueOf(doctorId)));
+    }
+
+    @Test
+    void should_tag_an_entity_with_its_version() throws Exception {
+        mockMvc.perform(get("/api/doctors/" + doctorId))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(jsonPath("$.version").doesNotExist());
+
+        mockMvc.perform(get("/api/doctors/" + doctorId).header("If-None-Match", "\"0\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/appointments/" + firstId).header("If-None-Match", "\"0.0.0.0\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/appointments/" + firstId).header("If-None-Match", "\"0.0.0.1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0.0.0.0\""));
+        mockMvc.perform(get("/api/doctors/0").header("If-None-Match", "\"0\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void should_answer_an_unchanged_entity_from_its_version_without_loading_it() throws Exception {
+        mockMvc.perform(get("/api/appointments/" + firstId).header("If-None-Match", "\"0.0.0.0\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/rooms/Room 0").header("If-None-Match", "\"0\""))
+                .andExpect(status().isNotModified());
+
+        // One version select each
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(statistics.getSecondLevelCacheHitCount()).isZero();
+    }
+
+    private static String byReference(String roomName, long doctorId, long patientId, String startsAt, String finishesAt){
+        return "{\"roomName\":\"" + roomName + "\",\"doctorId\":" + doctorId + ",\"patientId\":" + patientId
+                + ",\"startsAt\":\"" + startsAt + "\",\"finishesAt\":\"" + finishesAt + "\"}";
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.demo.booking.BatchBookingService;
+import com.example.demo.booking.BatchItemResult;
+import com.example.demo.booking.BatchItemResult.Status;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.schedule.ScheduleEntry;
+
+class BatchBookingServiceUnitTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    private static ScheduleEntry entry(long id, int fromMinute, int toMinute){
+        return new ScheduleEntry(id, "Dermatology", NINE.plusMinutes(fromMinute), NINE.plusMinutes(toMinute));
+    }
+
+    private static List<ScheduleEntry> sorted(ScheduleEntry... entries){
+        List<ScheduleEntry> list = new ArrayList<>(Arrays.asList(entries));
+        list.sort(ScheduleEntry.BY_START);
+        return list;
+    }
+
+    @Test
+    void should_accept_disjoint_entries(){
+        List<ScheduleEntry> accepted = BatchBookingService.sweep(Collections.emptyList(),
+                sorted(entry(0, 0, 30), entry(1, 30, 60), entry(2, 90, 120)));
+
+        assertThat(accepted).extracting(ScheduleEntry::getId).containsExactly(0L, 1L, 2L);
+    }
+
+    @Test
+    void should_reject_entries_overlapping_an_earlier_entry_of_the_batch(){
+        List<ScheduleEntry> accepted = BatchBookingService.sweep(Collections.emptyList(),
+                sorted(entry(0, 0, 60), entry(1, 30, 90), entry(2, 60, 90), entry(3, 0, 60)));
+
+        assertThat(accepted).extracting(ScheduleEntry::getId).containsExactly(0L, 2L);
+    }
+
+    @Test
+    void should_reject_entries_overlapping_stored_appointments(){
+        List<ScheduleEntry> existing = sorted(entry(100, 60, 120));
+
+        List<ScheduleEntry> accepted = BatchBookingService.sweep(existing,
+                sorted(entry(0, 0, 30), entry(1, 30, 61), entry(2, 70, 80), entry(3, 119, 150), entry(4, 120, 150)));
+
+        assertThat(accepted).extracting(ScheduleEntry::getId).containsExactly(0L, 4L);
+    }
+
+    @Test
+    void should_reject_entries_inside_a_long_stored_appointment(){
+        List<ScheduleEntry> existing = sorted(entry(100, 0, 600), entry(101, 60, 90));
+
+        List<ScheduleEntry> accepted = BatchBookingService.sweep(existing,
+                sorted(entry(0, 120, 150), entry(1, 600, 630)));
+
+        assertThat(accepted).extracting(ScheduleEntry::getId).containsExactly(1L);
+    }
+}
+
+@SpringBootTest
+class BatchBookingServiceTest {
+
+    @Autowired
+    BatchBookingService batchBookingService;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @AfterEach
+    void cleanup(){
+        appointmentRepository.deleteAll();
+        roomRepository.deleteAll();
+        doctorRepository.deleteAll();
+        patientRepository.deleteAll();
+    }
+
+    private final AtomicInteger people = new AtomicInteger();
+
+    private Appointment appointment(String roomName, int fromHour, int toHour){
+        // New people each time
+        int n = people.incrementAndGet();
+        return new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya" + n + "@email.com"),
+                new Doctor("Perla", "Amalia", 24, "p.amalia" + n + "@hospital.accwe"), new Room(roomName),
+                LocalDateTime.of(2023, 4, 24, fromHour, 0), LocalDateTime.of(2023, 4, 24, toHour, 0));
+    }
+
+    @Test
+    void should_store_accepted_entries_and_report_every_entry(){
+        batchBookingService.book(Arrays.asList(appointment("Dermatology", 9, 10)));
+
+        List<BatchItemResult> results = batchBookingService.book(Arrays.asList(
+                appointment("Dermatology", 9, 11),
+                appointment("Oncology", 9, 10),
+                appointment("Dermatology", 10, 11),
+                appointment("Oncology", 9, 9),
+                appointment("Oncology", 10, 12),
+                appointment("Oncology", 11, 12)));
+
+        assertThat(results).extracting(BatchItemResult::getStatus).containsExactly(
+                Status.CONFLICT, Status.ACCEPTED, Status.ACCEPTED, Status.INVALID, Status.ACCEPTED, Status.CONFLICT);
+        assertThat(results.get(1).getId()).isNotNull();
+        assertThat(results.get(0).getId()).isNull();
+        assertThat(appointmentRepository.findAll()).hasSize(4);
+        assertThat(roomRepository.findAll()).hasSize(2);
+    }
+
+    @Test
+    void should_index_the_results_of_a_chunk_by_their_position_in_the_request(){
+        List<BatchItemResult> results = batchBookingService.book(Arrays.asList(
+                appointment("Dermatology", 9, 10), appointment("Dermatology", 9, 10)), 500);
+
+        assertThat(results).extracting(BatchItemResult::getIndex).containsExactly(500, 501);
+        assertThat(results).extracting(BatchItemResult::getStatus).containsExactly(Status.ACCEPTED, Status.CONFLICT);
+    }
+
+    @Test
+    void should_reject_entries_booking_a_doctor_in_two_rooms_at_once(){
+        Doctor doctor = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Appointment stored = appointment("Dermatology", 9, 10);
+        stored.setDoctor(doctor);
+        batchBookingService.book(Arrays.asList(stored));
+
+        Appointment sameDoctor = appointment("Oncology", 9, 10);
+        sameDoctor.setDoctor(doctor);
+        Appointment sameDoctorLater = appointment("Pediatric", 10, 11);
+        sameDoctorLater.setDoctor(doctor);
+        Appointment sameDoctorTwice = appointment("Cardiology", 10, 11);
+        sameDoctorTwice.setDoctor(doctor);
+
+        List<BatchItemResult> results = batchBookingService.book(Arrays.asList(
+                sameDoctor, sameDoctorLater, sameDoctorTwice, appointment("Oncology", 11, 12)));
+
+        assertThat(results).extracting(BatchItemResult::getStatus).containsExactly(
+                Status.CONFLICT, Status.ACCEPTED, Status.CONFLICT, Status.ACCEPTED);
+    }
+
+    @Test
+    void should_report_a_failed_room_without_losing_the_rooms_stored(){
+        Appointment unknownDoctor = appointment("Oncology", 9, 10);
+        unknownDoctor.getDoctor().setId(Long.MAX_VALUE);
+
+        List<BatchItemResult> results = batchBookingService.book(Arrays.asList(
+                appointment("Dermatology", 9, 10), unknownDoctor, appointment("Oncology", 11, 12)));
+
+        assertThat(results).extracting(BatchItemResult::getStatus).containsExactly(
+                Status.ACCEPTED, Status.FAILED, Status.FAILED);
+        assertThat(results.get(0).getId()).isNotNull();
+        assertThat(results.get(1).getReason()).isEqualTo("Unknown doctor or patient");
+        assertThat(results.get(2).getId()).isNull();
+        assertThat(appointmentRepository.findAll()).extracting(Appointment::getId)
+                .containsExactly(results.get(0).getId());
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.booking.BatchBookingService;
+import com.example.demo.booking.BatchItemResult;
+import com.example.demo.booking.BookingDispatcher;
+import com.example.demo.booking.LaneUnavailableException;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.schedule.ScheduleIndex;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(properties = {"booking.mode=lanes", "booking.lanes=3"})
+class BookingDispatcherLanesTest {
+
+    @Autowired
+    BookingDispatcher bookingDispatcher;
+
+    @Autowired
+    BatchBookingService batchBookingService;
+
+    @Autowired
+    ScheduleIndex scheduleIndex;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @AfterEach
+    void cleanup(){
+        appointmentRepository.deleteAll();
+        roomRepository.deleteAll();
+        doctorRepository.deleteAll();
+        patientRepository.deleteAll();
+        scheduleIndex.clear();
+    }
+
+    private final AtomicInteger people = new AtomicInteger();
+
+    private Appointment appointment(String roomName, LocalDateTime startsAt){
+        // New people each time
+        int n = people.incrementAndGet();
+        return new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya" + n + "@email.com"),
+                new Doctor("Perla", "Amalia", 24, "p.amalia" + n + "@hospital.accwe"),
+                new Room(roomName), startsAt, startsAt.plusHours(1));
+    }
+
+    @Test
+    void should_start_the_configured_lanes(){
+        assertThat(bookingDispatcher.getLaneCount()).isEqualTo(3);
+        assertThat(bookingDispatcher.laneOf("Dermatology")).isEqualTo(bookingDispatcher.laneOf("Dermatology"));
+        assertThat(meterRegistry.find("booking.lane.queue").gauges()).hasSize(3);
+    }
+
+    @Test
+    void should_accept_only_one_of_concurrent_overlapping_bookings() throws Exception {
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 0);
+        bookingDispatcher.book(appointment("Dermatology", startsAt.minusHours(2)));
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            LocalDateTime slot = startsAt.plusMinutes(i);
+            Callable<Boolean> booking = () -> {
+                start.await();
+                return bookingDispatcher.book(appointment("Dermatology", slot)).isEmpty();
+            };
+            results.add(executor.submit(booking));
+        }
+        start.countDown();
+
+        int accepted = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                accepted++;
+            }
+        }
+        executor.shutdown();
+
+        assertThat(accepted).isEqualTo(1);
+        assertThat(appointmentRepository.findAll()).hasSize(2);
+    }
+
+    @Test
+    void should_record_the_latency_of_the_lane(){
+        String lane = String.valueOf(bookingDispatcher.laneOf("Oncology"));
+        long before = meterRegistry.get("booking.lane.latency").tag("lane", lane).timer().count();
+
+        assertThat(bookingDispatcher.book(appointment("Oncology", LocalDateTime.of(2023, 4, 24, 19, 0)))).isEmpty();
+
+        assertThat(meterRegistry.get("booking.lane.latency").tag("lane", lane).timer().count()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void should_book_each_room_of_a_batch_on_its_lane(){
+        String lane = String.valueOf(bookingDispatcher.laneOf("Pediatric"));
+        long before = meterRegistry.get("booking.lane.latency").tag("lane", lane).timer().count();
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 0);
+
+        List<BatchItemResult> results = batchBookingService.book(Arrays.asList(
+                appointment("Pediatric", startsAt), appointment("Pediatric", startsAt.plusHours(1))));
+
+        assertThat(results).extracting(BatchItemResult::getStatus)
+                .containsOnly(BatchItemResult.Status.ACCEPTED);
+        // Both entries of the room in one booking on the lane
+        assertThat(meterRegistry.get("booking.lane.latency").tag("lane", lane).timer().count()).isEqualTo(before + 1);
+        assertThat(scheduleIndex.size()).isEqualTo(2);
+    }
+
+    @Test
+    void should_rebuild_the_schedule_index_with_one_statement(){
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+        for (int i = 0; i < 5; i++) {
+            assertThat(bookingDispatcher.book(appointment("Room " + i, startsAt))).isEmpty();
+        }
+        scheduleIndex.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        scheduleIndex.rebuild();
+
+        assertThat(scheduleIndex.size()).isEqualTo(5);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
+
+@SpringBootTest(properties = {"booking.mode=lanes", "booking.lanes=1", "booking.lanes.queue-capacity=1",
+        "booking.lanes.timeout=2s"})
+@AutoConfigureMockMvc
+class BookingDispatcherFullLaneTest {
+
+    @Autowired
+    BookingDispatcher bookingDispatcher;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void cleanup() throws Exception {
+        release.countDown();
+        callers.shutdown();
+        callers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // Keeps the only lane busy until the test ends
+    private void blockLane() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        callers.submit(() -> bookingDispatcher.onLane("Dermatology", () -> {
+            running.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void should_answer_503_when_the_lane_is_full() throws Exception {
+        blockLane();
+        callers.submit(() -> bookingDispatcher.onLane("Dermatology", () -> true));
+        while (meterRegistry.get("booking.lane.queue").gauge().value() < 1) {
+            Thread.sleep(1);
+        }
+
+        assertThatThrownBy(() -> bookingDispatcher.onLane("Oncology", () -> true))
+                .isInstanceOf(LaneUnavailableException.class)
+                .hasMessageContaining("full");
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 0);
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"),
+                new Room("Dermatology"), startsAt, startsAt.plusHours(1));
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void should_give_up_on_a_booking_the_lane_does_not_reach_in_time() throws Exception {
+        blockLane();
+        AtomicBoolean ran = new AtomicBoolean();
+
+        assertThatThrownBy(() -> bookingDispatcher.onLane("Dermatology", () -> ran.getAndSet(true)))
+                .isInstanceOf(LaneUnavailableException.class)
+                .hasMessageContaining("did not book");
+
+        // Taken off the queue: it leaves room for the next booking and never runs
+        assertThat(meterRegistry.get("booking.lane.queue").gauge().value()).isZero();
+        release.countDown();
+        assertThat(bookingDispatcher.onLane("Dermatology", () -> true)).isTrue();
+        assertThat(ran).isFalse();
+    }
+
+    @Test
+    void should_wait_for_a_booking_the_lane_started_before_the_timeout(){
+        // Started at once but finishing after the timeout, like a slow commit
+        assertThat(bookingDispatcher.onLane("Dermatology", () -> {
+            try {
+                Thread.sleep(2500);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return true;
+        })).isTrue();
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.demo.booking.BatchBookingService;
+import com.example.demo.booking.BatchItemResult;
+import com.example.demo.booking.BookingMode;
+import com.example.demo.booking.BookingService;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.schedule.ResourceType;
+import com.example.demo.schedule.ScheduleConflict;
+
+@SpringBootTest(properties = "booking.mode=locking")
+class BookingServiceLockingTest {
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    BatchBookingService batchBookingService;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @AfterEach
+    void cleanup(){
+        appointmentRepository.deleteAll();
+        roomRepository.deleteAll();
+        doctorRepository.deleteAll();
+        patientRepository.deleteAll();
+    }
+
+    private final AtomicInteger people = new AtomicInteger();
+
+    private Appointment appointment(String roomName, LocalDateTime startsAt){
+        // New people each time
+        int n = people.incrementAndGet();
+        return new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya" + n + "@email.com"),
+                new Doctor("Perla", "Amalia", 24, "p.amalia" + n + "@hospital.accwe"),
+                new Room(roomName), startsAt, startsAt.plusHours(1));
+    }
+
+    @Test
+    void should_run_in_locking_mode(){
+        assertThat(bookingService.getBookingMode()).isEqualTo(BookingMode.LOCKING);
+    }
+
+    @Test
+    void should_accept_only_one_of_concurrent_overlapping_bookings() throws Exception {
+        roomRepository.save(new Room("Dermatology"));
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 0);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            LocalDateTime slot = startsAt.plusMinutes(i);
+            Callable<Boolean> booking = () -> {
+                start.await();
+                return bookingService.book(appointment("Dermatology", slot)).isEmpty();
+            };
+            results.add(executor.submit(booking));
+        }
+        start.countDown();
+
+        int accepted = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                accepted++;
+            }
+        }
+        executor.shutdown();
+
+        assertThat(accepted).isEqualTo(1);
+        assertThat(appointmentRepository.findAll()).hasSize(1);
+    }
+
+    @Test
+    void should_not_let_a_batch_and_single_bookings_both_take_a_room() throws Exception {
+        roomRepository.save(new Room("Dermatology"));
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 0);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            LocalDateTime slot = startsAt.plusMinutes(i);
+            boolean batch = i % 2 == 0;
+            Callable<Boolean> booking = () -> {
+                start.await();
+                if (batch) {
+                    return batchBookingService.book(Collections.singletonList(appointment("Dermatology", slot)))
+                            .get(0).getStatus() == BatchItemResult.Status.ACCEPTED;
+                }
+                return bookingService.book(appointment("Dermatology", slot)).isEmpty();
+            };
+            results.add(executor.submit(booking));
+        }
+        start.countDown();
+
+        int accepted = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                accepted++;
+            }
+        }
+        executor.shutdown();
+
+        assertThat(accepted).isEqualTo(1);
+        assertThat(appointmentRepository.findAll()).hasSize(1);
+    }
+
+    @Test
+    void should_book_different_rooms_at_the_same_time(){
+        roomRepository.save(new Room("Dermatology"));
+        roomRepository.save(new Room("Oncology"));
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 0);
+
+        assertThat(bookingService.book(appointment("Dermatology", startsAt))).isEmpty();
+        assertThat(bookingService.book(appointment("Oncology", startsAt))).isEmpty();
+        assertThat(bookingService.book(appointment("Oncology", startsAt.plusMinutes(30)))).isNotEmpty();
+    }
+
+    @Test
+    void should_not_book_a_doctor_or_patient_in_two_rooms_at_once(){
+        Doctor doctor = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Patient patient = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        roomRepository.save(new Room("Dermatology"));
+        roomRepository.save(new Room("Oncology"));
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 0);
+
+        Appointment first = new Appointment(patient, doctor, new Room("Dermatology"), startsAt, startsAt.plusHours(1));
+        assertThat(bookingService.book(first)).isEmpty();
+
+        Appointment sameDoctor = new Appointment(new Patient("Paulino", "Antunez", 37, "p.antunez@email.com"),
+                doctor, new Room("Oncology"), startsAt.plusMinutes(30), startsAt.plusMinutes(90));
+        assertThat(bookingService.book(sameDoctor))
+                .extracting(ScheduleConflict::getResource, ScheduleConflict::getAppointmentId)
+                .containsExactly(tuple(ResourceType.DOCTOR, first.getId()));
+
+        Appointment samePatient = new Appointment(patient, new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"),
+                new Room("Oncology"), startsAt.plusMinutes(30), startsAt.plusMinutes(90));
+        assertThat(bookingService.book(samePatient))
+                .extracting(ScheduleConflict::getResource)
+                .containsExactly(ResourceType.PATIENT);
+
+        assertThat(appointmentRepository.findAll()).hasSize(1);
+    }
+}
@@ -4,6 +4,8 @@ package com.example.demo;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
@@ -102,5 +104,20 @@ class DoctorJpaUnitTest {
         repository.deleteAll();
         assertThat(repository.findAll()).isEmpty();
     }
-    
+
+    @Test
+    void should_page_doctors_after_a_cursor(){
+        Doctor doc1 = entityManager.persist(new Doctor("Juan","Carlos", 34, "j.carlos@hospital.accwe"));
+        Doctor doc2 = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Doctor doc3 = entityManager.persist(new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"));
+
+        Slice<Doctor> first = repository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 2));
+        assertThat(first.getContent()).containsExactly(doc1, doc2);
+        assertThat(first.hasNext()).isTrue();
+
+        Slice<Doctor> second = repository.findByIdGreaterThanOrderByIdAsc(doc2.getId(), PageRequest.of(0, 2));
+        assertThat(second.getContent()).containsExactly(doc3);
+        assertThat(second.hasNext()).isFalse();
+    }
+
 }
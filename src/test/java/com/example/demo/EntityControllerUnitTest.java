@@ -6,43 +6,79 @@ import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import com.example.demo.booking.DeletionService;
+import com.example.demo.controllers.NdjsonStreams;
 import com.example.demo.controllers.DoctorController;
 import com.example.demo.controllers.PatientController;
 import com.example.demo.controllers.RoomController;
 import com.example.demo.entities.Doctor;
 import com.example.demo.entities.Patient;
 import com.example.demo.entities.Room;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.repositories.BulkPersister;
 import com.example.demo.repositories.DoctorRepository;
 import com.example.demo.repositories.PatientRepository;
 import com.example.demo.repositories.RoomRepository;
+import com.example.demo.repositories.TableChanges;
+import com.example.demo.repositories.TableVersions;
+import com.example.demo.schedule.AvailabilityService;
+import com.example.demo.schedule.ScheduleEntry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Unit test class for the DoctorController
  */
 @WebMvcTest(DoctorController.class)
+@Import(AvailabilityService.class)
 class DoctorControllerUnitTest {
 
+    @MockBean
+    private NdjsonStreams ndjsonStreams;
+
+    @MockBean
+    private DeletionService deletionService;
+
+    @MockBean
+    private TableChanges tableChanges;
+
     @MockBean
     private DoctorRepository doctorRepository;
 
+    @MockBean
+    private BulkPersister bulkPersister;
+
+    @MockBean
+    private AppointmentRepository appointmentRepository;
+
     @Autowired
     private MockMvc mockMvc;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    void tables(){
+        when(tableChanges.version(any())).thenReturn(new TableVersions(0, 0));
+    }
+
     /**
      * A test case that verifies the creation of a new Doctor.
      *
@@ -58,6 +94,38 @@ class DoctorControllerUnitTest {
                 .andExpect(status().isOk());
     }
 
+    /**
+     * A test to verify that doctors created in a batch are all returned.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void shouldCreateDoctorsInBatch() throws Exception {
+        List<Doctor> doctors = Arrays.asList(new Doctor("Maria", "Zambrano", 30, "maria@example.com"),
+                new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+
+        mockMvc.perform(post("/api/doctors/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(doctors)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].firstName").value("Perla"));
+        verify(bulkPersister).persistAll(anyList());
+    }
+
+    /**
+     * A test to verify that an empty batch of doctors is rejected.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void shouldNotCreateEmptyBatchOfDoctors() throws Exception {
+        mockMvc.perform(post("/api/doctors/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
     /**
      * A test to verify that creating a doctor with null values throws an exception.
      *
@@ -107,7 +175,7 @@ class DoctorControllerUnitTest {
         assertThat(opt.get().getId()).isEqualTo(newDoctor.getId());
         assertThat(newDoctor.getId()).isEqualTo(1);
 
-        when(doctorRepository.findById(newDoctor.getId())).thenReturn(opt);
+        when(doctorRepository.findCachedById(newDoctor.getId())).thenReturn(opt);
         mockMvc.perform(get("/api/doctors/" + newDoctor.getId()))
                 .andExpect(status().isOk());
     }
@@ -126,6 +194,30 @@ class DoctorControllerUnitTest {
                 .andExpect(status().isNoContent());
     }
 
+    /**
+     * Test case to verify that an unchanged list of doctors is answered
+     * with 304 without reading the repository.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void shouldNotSendUnchangedDoctors() throws Exception {
+        TableVersions version = new TableVersions(3, 1682326800000L);
+        when(tableChanges.version(Doctor.class)).thenReturn(version);
+
+        mockMvc.perform(get("/api/doctors").header("If-None-Match", version.getEtag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", version.getEtag()))
+                .andExpect(content().string(""));
+        verify(doctorRepository, never()).findAll();
+
+        when(doctorRepository.findAll()).thenReturn(Arrays.asList(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe")));
+        mockMvc.perform(get("/api/doctors").header("If-None-Match", new TableVersions(2, 1682326700000L).getEtag()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", version.getEtag()))
+                .andExpect(header().exists("Last-Modified"));
+    }
+
     /**
      * Test case for the shouldGetNoDoctorsById() method.
      *
@@ -159,11 +251,25 @@ class DoctorControllerUnitTest {
         assertThat(opt.get().getId()).isEqualTo(newDoctor.getId());
         assertThat(newDoctor.getId()).isEqualTo(1);
 
-        when(doctorRepository.findById(newDoctor.getId())).thenReturn(opt);
+        when(deletionService.deleteDoctor(newDoctor.getId())).thenReturn(true);
         mockMvc.perform(delete("/api/doctors/" + newDoctor.getId()))
                 .andExpect(status().isOk());
     }
 
+    /**
+     * A test case that verifies a doctor who still has appointments is not deleted.
+     *
+     * @throws Exception if an error occurs during the test
+     */
+    @Test
+    public void shouldNotDeleteDoctorWithAppointments() throws Exception {
+
+        when(deletionService.deleteDoctor(1)).thenThrow(new DataIntegrityViolationException("doctor_id"));
+
+        mockMvc.perform(delete("/api/doctors/1"))
+                .andExpect(status().isConflict());
+    }
+
     /**
      * A test case that verifies the behavior when attempting to delete a doctor
      * that does not exist.
@@ -190,7 +296,78 @@ class DoctorControllerUnitTest {
         List<Doctor> doctors = new ArrayList<Doctor>();
         mockMvc.perform(delete("/api/doctors"))
                 .andExpect(status().isOk());
+        verify(deletionService).deleteAllDoctors();
+    }
+
+    /**
+     * Test case to verify that the free slots of a doctor skip its appointments.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void shouldGetNextSlotsOfDoctor() throws Exception {
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        doctor.setId(1);
+        LocalDateTime from = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        when(doctorRepository.findById(1L)).thenReturn(Optional.of(doctor));
+        when(appointmentRepository.findDoctorScheduleEntries(1L, from, from.plusDays(1))).thenReturn(Arrays.asList(
+                new ScheduleEntry(10, "Dermatology", 1L, 2L, from, from.plusMinutes(45)),
+                new ScheduleEntry(11, "Oncology", 1L, 3L, from.plusMinutes(60), from.plusMinutes(90))));
+
+        mockMvc.perform(get("/api/doctors/1/next-slot")
+                .param("duration", "30").param("from", "09:00 24/04/2023")
+                .param("horizon", "1").param("count", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].startsAt").value("10:30 24/04/2023"))
+                .andExpect(jsonPath("$[0].finishesAt").value("11:00 24/04/2023"))
+                .andExpect(jsonPath("$[2].startsAt").value("11:30 24/04/2023"));
+    }
+
+    /**
+     * Test case to verify that the free slots of an unknown doctor are not found.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void shouldNotGetNextSlotsOfUnknownDoctor() throws Exception {
+        when(doctorRepository.findById(1L)).thenReturn(Optional.empty());
+        mockMvc.perform(get("/api/doctors/1/next-slot"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/api/doctors/1/next-slot").param("duration", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+
+    /**
+     * Test case to verify that a page of doctors carries the cursor of the next one.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void shouldGetDoctorsPageWithNextCursor() throws Exception {
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        doctor.setId(12);
+        when(doctorRepository.findByIdGreaterThanOrderByIdAsc(10L, PageRequest.of(0, 1)))
+                .thenReturn(new SliceImpl<>(Arrays.asList(doctor), PageRequest.of(0, 1), true));
+        when(doctorRepository.findByIdGreaterThanOrderByIdAsc(12L, PageRequest.of(0, 1)))
+                .thenReturn(new SliceImpl<>(new ArrayList<Doctor>(), PageRequest.of(0, 1), false));
+
+        mockMvc.perform(get("/api/doctors").param("limit", "1").param("after", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "12"))
+                .andExpect(jsonPath("$[0].id").value("12"));
+
+        mockMvc.perform(get("/api/doctors").param("limit", "1").param("after", "12"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        mockMvc.perform(get("/api/doctors").param("limit", "0"))
+                .andExpect(status().isBadRequest());
     }
+
 }
 
 /**
@@ -200,15 +377,32 @@ class DoctorControllerUnitTest {
 @WebMvcTest(PatientController.class)
 class PatientControllerUnitTest {
 
+    @MockBean
+    private NdjsonStreams ndjsonStreams;
+
+    @MockBean
+    private DeletionService deletionService;
+
+    @MockBean
+    private TableChanges tableChanges;
+
     @MockBean
     private PatientRepository patientRepository;
 
+    @MockBean
+    private BulkPersister bulkPersister;
+
     @Autowired
     private MockMvc mockMvc;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    void tables(){
+        when(tableChanges.version(any())).thenReturn(new TableVersions(0, 0));
+    }
+
     /**
      * A method to test the functionality of retrieving patients from the API.
      *
@@ -270,7 +464,7 @@ class PatientControllerUnitTest {
         assertThat(opt.get().getId()).isEqualTo(newPatient.getId());
         assertThat(newPatient.getId()).isEqualTo(1);
 
-        when(patientRepository.findById(newPatient.getId())).thenReturn(opt);
+        when(patientRepository.findCachedById(newPatient.getId())).thenReturn(opt);
         mockMvc.perform(get("/api/patients/" + newPatient.getId()))
                 .andExpect(status().isOk());
 
@@ -326,7 +520,7 @@ class PatientControllerUnitTest {
         assertThat(opt.get().getId()).isEqualTo(newPatient.getId());
         assertThat(newPatient.getId()).isEqualTo(1);
 
-        when(patientRepository.findById(newPatient.getId())).thenReturn(opt);
+        when(deletionService.deletePatient(newPatient.getId())).thenReturn(true);
         mockMvc.perform(delete("/api/patients/" + newPatient.getId()))
                 .andExpect(status().isOk());
     }
@@ -365,17 +559,35 @@ class PatientControllerUnitTest {
  */
 
 @WebMvcTest(RoomController.class)
+@Import(AvailabilityService.class)
 class RoomControllerUnitTest {
 
+    @MockBean
+    private NdjsonStreams ndjsonStreams;
+
+    @MockBean
+    private DeletionService deletionService;
+
+    @MockBean
+    private TableChanges tableChanges;
+
     @MockBean
     private RoomRepository roomRepository;
 
+    @MockBean
+    private AppointmentRepository appointmentRepository;
+
     @Autowired
     private MockMvc mockMvc;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    void tables(){
+        when(tableChanges.version(any())).thenReturn(new TableVersions(0, 0));
+    }
+
     /**
      * This function is a test case that verifies the creation of a new room.
      * 
@@ -435,7 +647,7 @@ class RoomControllerUnitTest {
         assertThat(opt.get().getRoomName()).isEqualTo(newRoom.getRoomName());
         assertThat(newRoom.getRoomName()).isEqualTo("Dermatology");
 
-        when(roomRepository.findByRoomName(newRoom.getRoomName())).thenReturn(opt);
+        when(roomRepository.findById(newRoom.getRoomName())).thenReturn(opt);
         mockMvc.perform(get("/api/rooms/" + newRoom.getRoomName()))
                 .andExpect(status().isOk());
 
@@ -487,7 +699,7 @@ class RoomControllerUnitTest {
         assertThat(opt.get().getRoomName()).isEqualTo(newRoom.getRoomName());
         assertThat(newRoom.getRoomName()).isEqualTo("Dermatology");
 
-        when(roomRepository.findByRoomName(newRoom.getRoomName())).thenReturn(opt);
+        when(deletionService.deleteRoom(newRoom.getRoomName())).thenReturn(true);
         mockMvc.perform(delete("/api/rooms/" + newRoom.getRoomName()))
                 .andExpect(status().isOk());
     }
@@ -519,4 +731,77 @@ class RoomControllerUnitTest {
                 .andExpect(status().isOk());
     }
 
+
+    /**
+     * Test case to verify that the free slots of a room fill the gaps of its schedule.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void shouldGetNextSlotsOfRoom() throws Exception {
+        Room room = new Room("Dermatology");
+        LocalDateTime from = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        when(roomRepository.findById("Dermatology")).thenReturn(Optional.of(room));
+        when(appointmentRepository.findRoomScheduleEntries("Dermatology", from, from.plusDays(1))).thenReturn(Arrays.asList(
+                new ScheduleEntry(10, "Dermatology", from.minusMinutes(30), from.plusMinutes(30)),
+                new ScheduleEntry(11, "Dermatology", from.plusMinutes(60), from.plusMinutes(120))));
+
+        mockMvc.perform(get("/api/rooms/Dermatology/next-slot")
+                .param("duration", "30").param("from", "09:00 24/04/2023")
+                .param("horizon", "1").param("count", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].startsAt").value("09:30 24/04/2023"))
+                .andExpect(jsonPath("$[1].startsAt").value("11:00 24/04/2023"));
+    }
+
+    /**
+     * Test case to verify that the free slots of an unknown room are not found.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void shouldNotGetNextSlotsOfUnknownRoom() throws Exception {
+        when(roomRepository.findById("Dermatology")).thenReturn(Optional.empty());
+        mockMvc.perform(get("/api/rooms/Dermatology/next-slot"))
+                .andExpect(status().isNotFound());
+    }
+
+
+    /**
+     * Test case to verify that the API returns the rooms free in a window.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void shouldGetFreeRooms() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2023, 4, 24, 9, 0);
+        when(roomRepository.findFree(from, from.plusHours(1))).thenReturn(Arrays.asList(new Room("Oncology")));
+
+        mockMvc.perform(get("/api/rooms/free").param("from", "09:00 24/04/2023").param("to", "10:00 24/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].roomName").value("Oncology"));
+
+        mockMvc.perform(get("/api/rooms/free").param("from", "10:00 24/04/2023").param("to", "10:00 24/04/2023"))
+                .andExpect(status().isBadRequest());
+    }
+
+
+    /**
+     * Test case to verify that the last page of rooms has no next cursor.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void shouldGetLastRoomsPage() throws Exception {
+        when(roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc("Dermatology", PageRequest.of(0, 100)))
+                .thenReturn(new SliceImpl<>(Arrays.asList(new Room("Oncology")), PageRequest.of(0, 100), false));
+
+        mockMvc.perform(get("/api/rooms").param("after", "Dermatology"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$[0].roomName").value("Oncology"));
+    }
+
 }
@@ -0,0 +1,70 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.schedule.FreeSlots;
+import com.example.demo.schedule.ScheduleEntry;
+import com.example.demo.schedule.Slot;
+
+class FreeSlotsUnitTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    private static ScheduleEntry entry(long id, int fromMinute, int toMinute){
+        return new ScheduleEntry(id, "Dermatology", NINE.plusMinutes(fromMinute), NINE.plusMinutes(toMinute));
+    }
+
+    private static Slot slot(int fromMinute, int toMinute){
+        return new Slot(NINE.plusMinutes(fromMinute), NINE.plusMinutes(toMinute));
+    }
+
+    @Test
+    void should_return_the_whole_window_of_an_empty_schedule(){
+        assertThat(FreeSlots.gaps(Collections.emptyList(), NINE, NINE.plusHours(2)))
+            .containsExactly(slot(0, 120));
+    }
+
+    @Test
+    void should_return_the_gaps_between_appointments(){
+        List<ScheduleEntry> busy = Arrays.asList(entry(1, -30, 30), entry(2, 60, 90), entry(3, 90, 100), entry(4, 150, 300));
+
+        assertThat(FreeSlots.gaps(busy, NINE, NINE.plusHours(4)))
+            .containsExactly(slot(30, 60), slot(100, 150));
+    }
+
+    @Test
+    void should_not_reopen_time_covered_by_a_longer_overlapping_appointment(){
+        List<ScheduleEntry> busy = Arrays.asList(entry(1, 0, 120), entry(2, 30, 60), entry(3, 150, 160));
+
+        assertThat(FreeSlots.gaps(busy, NINE, NINE.plusHours(3)))
+            .containsExactly(slot(120, 150), slot(160, 180));
+    }
+
+    @Test
+    void should_cut_back_to_back_slots_that_fit_in_the_gaps(){
+        List<Slot> gaps = Arrays.asList(slot(0, 20), slot(30, 100), slot(120, 180));
+
+        assertThat(FreeSlots.slots(gaps, Duration.ofMinutes(30), 3))
+            .containsExactly(slot(30, 60), slot(60, 90), slot(120, 150));
+        assertThat(FreeSlots.slots(gaps, Duration.ofMinutes(90), 3)).isEmpty();
+    }
+
+    @Test
+    void should_keep_only_the_time_free_in_both_lists(){
+        List<Slot> a = Arrays.asList(slot(0, 60), slot(90, 200));
+        List<Slot> b = Arrays.asList(slot(30, 100), slot(120, 130), slot(150, 240));
+
+        assertThat(FreeSlots.intersect(a, b))
+            .containsExactly(slot(30, 60), slot(90, 100), slot(120, 130), slot(150, 200));
+        assertThat(FreeSlots.intersect(a, Collections.emptyList())).isEmpty();
+        assertThat(FreeSlots.intersect(Arrays.asList(slot(0, 30)), Arrays.asList(slot(30, 60)))).isEmpty();
+    }
+}
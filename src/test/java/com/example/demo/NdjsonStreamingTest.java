@@ -0,0 +1,106 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class NdjsonStreamingTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @AfterEach
+    void cleanup(){
+        appointmentRepository.deleteAll();
+        roomRepository.deleteAll();
+        doctorRepository.deleteAll();
+        patientRepository.deleteAll();
+    }
+
+    private String stream(String path) throws Exception {
+        MvcResult started = mockMvc.perform(get(path).accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Test
+    void should_stream_one_appointment_per_line() throws Exception {
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Room room = new Room("Dermatology");
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < 250; i++){
+            appointments.add(new Appointment(patient, doctor, room, nine.plusHours(i), nine.plusHours(i).plusMinutes(30)));
+        }
+        // One transaction, so the shared doctor, patient and room are inserted once
+        appointmentRepository.saveAll(appointments);
+
+        String[] lines = stream("/api/appointments").split("\n");
+
+        assertThat(lines).hasSize(250);
+        Appointment first = objectMapper.readValue(lines[0], Appointment.class);
+        assertThat(first.getRoom().getRoomName()).isEqualTo("Dermatology");
+        assertThat(first.getDoctor().getId()).isEqualTo(doctor.getId());
+        assertThat(first.getStartsAt()).isEqualTo(nine);
+    }
+
+    @Test
+    void should_stream_rooms_in_name_order() throws Exception {
+        roomRepository.save(new Room("Oncology"));
+        roomRepository.save(new Room("Dermatology"));
+
+        assertThat(stream("/api/rooms").split("\n")).containsExactly(
+                "{\"roomName\":\"Dermatology\"}", "{\"roomName\":\"Oncology\"}");
+    }
+
+    @Test
+    void should_keep_json_for_other_clients() throws Exception {
+        patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+
+        mockMvc.perform(get("/api/patients"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        mockMvc.perform(get("/api/patients").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+}
@@ -2,8 +2,13 @@ package com.example.demo;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
@@ -12,7 +17,7 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 
 import com.example.demo.repositories.RoomRepository;
-import com.example.demo.entities.Room;
+import com.example.demo.entities.*;
 
 
 @DataJpaTest
@@ -69,6 +74,18 @@ class RoomJpaUnitTest {
         assertThat(room).isEqualTo(room2);
     }
 
+    @Test
+    void should_find_a_managed_room_without_a_query(){
+        Room room = entityManager.persistFlushFind(new Room("Dermatology"));
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertThat(repository.findById("Dermatology")).containsSame(room);
+        assertThat(repository.getReferenceById("Dermatology")).isSameAs(room);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
     @Test
     void should_delete_room(){
         Room room1 = new Room("Dermatology");
@@ -99,5 +116,45 @@ class RoomJpaUnitTest {
         repository.deleteAll();
         assertThat(repository.findAll()).isEmpty();
     }
-    
+
+    @Test
+    void should_find_rooms_free_in_a_window(){
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Operations");
+        Room room3 = new Room("Emergencies");
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+        entityManager.persist(room3);
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(new Appointment(patient, doctor, room1, nine, nine.plusHours(1)));
+        entityManager.persist(new Appointment(patient, doctor, room2, nine.plusHours(2), nine.plusHours(3)));
+
+        assertThat(repository.findFree(nine.plusMinutes(30), nine.plusHours(2)))
+            .containsExactly(room3, room2);
+        assertThat(repository.findFree(nine.plusHours(1), nine.plusHours(2)))
+            .containsExactly(room1, room3, room2);
+        assertThat(repository.findFree(nine, nine.plusHours(3)))
+            .containsExactly(room3);
+    }
+
+    @Test
+    void should_page_rooms_after_a_cursor(){
+        entityManager.persist(new Room("Dermatology"));
+        entityManager.persist(new Room("Operations"));
+        entityManager.persist(new Room("Emergencies"));
+
+        Slice<Room> first = repository.findByRoomNameGreaterThanOrderByRoomNameAsc("", PageRequest.of(0, 2));
+        assertThat(first.getContent()).extracting(Room::getRoomName).containsExactly("Dermatology", "Emergencies");
+        assertThat(first.hasNext()).isTrue();
+
+        Slice<Room> second = repository.findByRoomNameGreaterThanOrderByRoomNameAsc("Emergencies", PageRequest.of(0, 2));
+        assertThat(second.getContent()).extracting(Room::getRoomName).containsExactly("Operations");
+        assertThat(second.hasNext()).isFalse();
+    }
+
 }
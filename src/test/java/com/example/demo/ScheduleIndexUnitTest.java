@@ -0,0 +1,207 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entities.*;
+import com.example.demo.schedule.ResourceType;
+import com.example.demo.schedule.ScheduleConflict;
+import com.example.demo.schedule.ScheduleIndex;
+import com.example.demo.schedule.ScheduleEntry;
+
+class ScheduleIndexUnitTest {
+
+    private ScheduleIndex index;
+
+    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+    private final Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+    private final Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+
+    @BeforeEach
+    void setup(){
+        index = new ScheduleIndex();
+        index.add(appointment(1, "Dermatology", "09:00 24/04/2023", "10:00 24/04/2023"));
+        index.add(appointment(2, "Dermatology", "11:00 24/04/2023", "12:00 24/04/2023"));
+        index.add(appointment(3, "Oncology", "09:00 24/04/2023", "10:00 24/04/2023"));
+    }
+
+    private Appointment appointment(long id, String roomName, String startsAt, String finishesAt){
+        Appointment appointment = new Appointment(patient, doctor, new Room(roomName),
+                LocalDateTime.parse(startsAt, formatter), LocalDateTime.parse(finishesAt, formatter));
+        appointment.setId(id);
+        return appointment;
+    }
+
+    @Test
+    void should_detect_conflicts_in_the_same_room(){
+        assertThat(index.findConflicts(appointment(0, "Dermatology", "09:30 24/04/2023", "10:30 24/04/2023"))).isNotEmpty();
+        assertThat(index.findConflicts(appointment(0, "Dermatology", "08:30 24/04/2023", "09:30 24/04/2023"))).isNotEmpty();
+        assertThat(index.findConflicts(appointment(0, "Dermatology", "09:00 24/04/2023", "10:00 24/04/2023"))).isNotEmpty();
+    }
+
+    @Test
+    void should_detect_an_appointment_inside_an_existing_one(){
+        assertThat(index.findConflicts(appointment(0, "Dermatology", "09:15 24/04/2023", "09:45 24/04/2023"))).isNotEmpty();
+    }
+
+    @Test
+    void should_detect_an_appointment_covering_existing_ones(){
+        assertThat(index.findRoomOverlaps("Dermatology",
+                LocalDateTime.parse("08:00 24/04/2023", formatter),
+                LocalDateTime.parse("13:00 24/04/2023", formatter)))
+            .extracting(ScheduleEntry::getId)
+            .containsExactly(1L, 2L);
+    }
+
+    @Test
+    void should_allow_back_to_back_appointments(){
+        assertThat(index.findConflicts(appointment(0, "Dermatology", "10:00 24/04/2023", "11:00 24/04/2023"))).isEmpty();
+    }
+
+    @Test
+    void should_ignore_other_rooms(){
+        assertThat(index.findConflicts(appointment(0, "Pediatric", "09:00 24/04/2023", "10:00 24/04/2023"))).isEmpty();
+        assertThat(index.findRoomOverlaps("Oncology",
+                LocalDateTime.parse("11:00 24/04/2023", formatter),
+                LocalDateTime.parse("12:00 24/04/2023", formatter))).isEmpty();
+    }
+
+    @Test
+    void should_free_the_slot_after_remove(){
+        index.remove(1);
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.findConflicts(appointment(0, "Dermatology", "09:00 24/04/2023", "10:00 24/04/2023"))).isEmpty();
+    }
+
+    @Test
+    void should_move_an_entry_when_it_is_added_again(){
+        index.add(appointment(1, "Oncology", "13:00 24/04/2023", "14:00 24/04/2023"));
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.findConflicts(appointment(0, "Dermatology", "09:00 24/04/2023", "10:00 24/04/2023"))).isEmpty();
+        assertThat(index.findConflicts(appointment(0, "Oncology", "13:30 24/04/2023", "14:30 24/04/2023"))).isNotEmpty();
+    }
+
+    @Test
+    void should_be_empty_after_clear(){
+        index.clear();
+
+        assertThat(index.size()).isZero();
+        assertThat(index.findConflicts(appointment(0, "Oncology", "09:00 24/04/2023", "10:00 24/04/2023"))).isEmpty();
+    }
+
+    @Test
+    void should_find_the_entries_of_a_room_finished_by_a_time(){
+        LocalDateTime ten = LocalDateTime.parse("10:00 24/04/2023", formatter);
+
+        assertThat(index.findFinishedBy("Dermatology", ten)).extracting(ScheduleEntry::getId).containsExactly(1L);
+        assertThat(index.findFinishedBy("Dermatology", ten.minusMinutes(1))).isEmpty();
+        assertThat(index.findFinishedBy("Dermatology", null)).extracting(ScheduleEntry::getId).containsExactly(1L, 2L);
+        assertThat(index.findFinishedBy(null, ten)).extracting(ScheduleEntry::getId).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(index.findFinishedBy("Pediatric", ten)).isEmpty();
+    }
+
+    @Test
+    void should_remove_only_the_matching_entries(){
+        index.removeIf(entry -> entry.getRoomName().equals("Dermatology"));
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.findConflicts(appointment(0, "Dermatology", "09:00 24/04/2023", "10:00 24/04/2023"))).isEmpty();
+        assertThat(index.findConflicts(appointment(0, "Oncology", "09:00 24/04/2023", "10:00 24/04/2023"))).isNotEmpty();
+    }
+
+    private Appointment appointment(long id, long doctorId, long patientId, String roomName, String startsAt, String finishesAt){
+        Doctor someDoctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        someDoctor.setId(doctorId);
+        Patient somePatient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        somePatient.setId(patientId);
+        Appointment appointment = new Appointment(somePatient, someDoctor, new Room(roomName),
+                LocalDateTime.parse(startsAt, formatter), LocalDateTime.parse(finishesAt, formatter));
+        appointment.setId(id);
+        return appointment;
+    }
+
+    @Test
+    void should_detect_doctor_and_patient_conflicts_across_rooms(){
+        index.add(appointment(10, 7, 8, "Pediatric", "14:00 24/04/2023", "15:00 24/04/2023"));
+
+        assertThat(index.findConflicts(appointment(0, 7, 9, "Cardiology", "14:30 24/04/2023", "15:30 24/04/2023")))
+            .extracting(ScheduleConflict::getResource, ScheduleConflict::getAppointmentId)
+            .containsExactly(tuple(ResourceType.DOCTOR, 10L));
+        assertThat(index.findConflicts(appointment(0, 6, 8, "Cardiology", "13:30 24/04/2023", "14:30 24/04/2023")))
+            .extracting(ScheduleConflict::getResource, ScheduleConflict::getAppointmentId)
+            .containsExactly(tuple(ResourceType.PATIENT, 10L));
+        assertThat(index.findConflicts(appointment(0, 7, 8, "Pediatric", "14:00 24/04/2023", "15:00 24/04/2023")))
+            .extracting(ScheduleConflict::getResource)
+            .containsExactly(ResourceType.ROOM, ResourceType.DOCTOR, ResourceType.PATIENT);
+        assertThat(index.findConflicts(appointment(0, 7, 8, "Cardiology", "15:00 24/04/2023", "16:00 24/04/2023"))).isEmpty();
+    }
+
+    @Test
+    void should_not_match_unsaved_doctors_and_patients(){
+        assertThat(index.findConflicts(appointment(0, "Pediatric", "09:00 24/04/2023", "10:00 24/04/2023"))).isEmpty();
+    }
+
+    @Test
+    void should_find_a_long_appointment_that_overlaps_later_ones(){
+        // Stored data may already hold overlapping appointments for a doctor
+        index.add(appointment(10, 7, 8, "Pediatric", "08:00 25/04/2023", "18:00 25/04/2023"));
+        index.add(appointment(11, 7, 9, "Cardiology", "09:00 25/04/2023", "10:00 25/04/2023"));
+
+        assertThat(index.findDoctorOverlaps(7, LocalDateTime.parse("12:00 25/04/2023", formatter),
+                LocalDateTime.parse("13:00 25/04/2023", formatter)))
+            .extracting(ScheduleEntry::getId)
+            .containsExactly(10L);
+    }
+
+    @Test
+    void should_still_find_overlaps_after_removing_the_longest_appointment(){
+        index.add(appointment(10, 7, 8, "Pediatric", "08:00 25/04/2023", "18:00 25/04/2023"));
+        index.add(appointment(11, 7, 9, "Cardiology", "09:00 26/04/2023", "13:00 26/04/2023"));
+        index.add(appointment(12, 7, 9, "Cardiology", "14:00 26/04/2023", "18:00 26/04/2023"));
+
+        index.remove(10);
+        index.remove(12);
+
+        // The longest left is 11, four hours long
+        assertThat(index.findDoctorOverlaps(7, LocalDateTime.parse("12:00 26/04/2023", formatter),
+                LocalDateTime.parse("13:00 26/04/2023", formatter)))
+            .extracting(ScheduleEntry::getId)
+            .containsExactly(11L);
+        assertThat(index.findDoctorOverlaps(7, LocalDateTime.parse("12:00 25/04/2023", formatter),
+                LocalDateTime.parse("13:00 25/04/2023", formatter))).isEmpty();
+    }
+
+    @Test
+    void should_move_an_updated_appointment_to_its_new_doctor(){
+        index.add(appointment(10, 7, 8, "Pediatric", "14:00 24/04/2023", "15:00 24/04/2023"));
+        index.add(appointment(10, 6, 8, "Pediatric", "14:00 24/04/2023", "15:00 24/04/2023"));
+
+        assertThat(index.findDoctorOverlaps(7, LocalDateTime.parse("14:00 24/04/2023", formatter),
+                LocalDateTime.parse("15:00 24/04/2023", formatter))).isEmpty();
+        assertThat(index.findDoctorOverlaps(6, LocalDateTime.parse("14:00 24/04/2023", formatter),
+                LocalDateTime.parse("15:00 24/04/2023", formatter)))
+            .extracting(ScheduleEntry::getId)
+            .containsExactly(10L);
+    }
+
+    @Test
+    void should_keep_a_shared_slot_busy_after_removing_one_of_its_appointments(){
+        index.add(appointment(10, "Pediatric", "14:00 24/04/2023", "14:32 24/04/2023"));
+        index.add(appointment(11, "Pediatric", "14:33 24/04/2023", "15:00 24/04/2023"));
+
+        index.remove(10);
+
+        assertThat(index.findConflicts(appointment(0, "Pediatric", "14:00 24/04/2023", "14:30 24/04/2023"))).isEmpty();
+        assertThat(index.findConflicts(appointment(0, "Pediatric", "14:31 24/04/2023", "14:34 24/04/2023"))).isNotEmpty();
+        assertThat(index.findConflicts(appointment(0, "Pediatric", "14:00 24/04/2023", "14:33 24/04/2023"))).isEmpty();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.controllers.SingleFlight;
+
+class SingleFlightUnitTest {
+
+    private static final int READERS = 8;
+
+    private final SingleFlight reads = new SingleFlight();
+    private final ExecutorService executor = Executors.newFixedThreadPool(READERS);
+    private final List<Thread> threads = new ArrayList<>();
+
+    @AfterEach
+    void cleanup(){
+        executor.shutdownNow();
+    }
+
+    @Test
+    void should_share_one_call_between_concurrent_identical_reads() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<List<String>> loader = () -> {
+            calls.incrementAndGet();
+            await(release);
+            return new ArrayList<>();
+        };
+
+        List<Future<List<String>>> results = startReaders("/rooms", loader);
+        release.countDown();
+
+        List<String> first = results.get(0).get();
+        for (Future<List<String>> result : results){
+            assertThat(result.get()).isSameAs(first);
+        }
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void should_share_the_failure_of_the_call() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<List<String>> loader = () -> {
+            await(release);
+            throw new IllegalStateException("database down");
+        };
+
+        List<Future<List<String>>> results = startReaders("/rooms", loader);
+        release.countDown();
+
+        for (Future<List<String>> result : results){
+            assertThatThrownBy(result::get).isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    void should_read_again_once_the_call_is_over(){
+        AtomicInteger calls = new AtomicInteger();
+
+        reads.load("/rooms", calls::incrementAndGet);
+        reads.load("/rooms", calls::incrementAndGet);
+        reads.load("/doctors", calls::incrementAndGet);
+
+        assertThat(calls).hasValue(3);
+    }
+
+    // Starts a reader that runs the loader, then the others, and returns once they all wait for it
+    private List<Future<List<String>>> startReaders(String key, Supplier<List<String>> loader) throws InterruptedException {
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int i = 0; i < READERS; i++){
+            CountDownLatch started = new CountDownLatch(1);
+            results.add(executor.submit(() -> {
+                synchronized (threads){
+                    threads.add(Thread.currentThread());
+                }
+                started.countDown();
+                return reads.load(key, loader);
+            }));
+            started.await();
+        }
+        for (Thread thread : threads){
+            while (thread.getState() != Thread.State.WAITING){
+                Thread.sleep(1);
+            }
+        }
+        return results;
+    }
+
+    private static void await(CountDownLatch latch){
+        try {
+            latch.await();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.schedule.SlotBitmap;
+
+class SlotBitmapUnitTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    private SlotBitmap bitmap;
+
+    @BeforeEach
+    void setup(){
+        bitmap = new SlotBitmap();
+        bitmap.mark(NINE, NINE.plusHours(1));
+    }
+
+    @Test
+    void should_see_marked_ranges_as_busy(){
+        assertThat(bitmap.isFree(NINE.minusHours(1), NINE)).isTrue();
+        assertThat(bitmap.isFree(NINE.plusHours(1), NINE.plusHours(2))).isTrue();
+        assertThat(bitmap.isFree(NINE.plusMinutes(55), NINE.plusHours(2))).isFalse();
+        assertThat(bitmap.isFree(NINE.minusHours(1), NINE.plusMinutes(5))).isFalse();
+        assertThat(bitmap.isFree(NINE.plusMinutes(20), NINE.plusMinutes(25))).isFalse();
+    }
+
+    @Test
+    void should_see_a_partly_covered_slot_as_busy(){
+        bitmap.mark(NINE.plusHours(2), NINE.plusHours(2).plusMinutes(2));
+
+        assertThat(bitmap.isFree(NINE.plusHours(2).plusMinutes(3), NINE.plusHours(2).plusMinutes(5))).isFalse();
+        assertThat(bitmap.isFree(NINE.plusHours(2).plusMinutes(5), NINE.plusHours(3))).isTrue();
+    }
+
+    @Test
+    void should_free_cleared_ranges(){
+        bitmap.clear(NINE.plusMinutes(30), NINE.plusHours(1));
+
+        assertThat(bitmap.isFree(NINE.plusMinutes(30), NINE.plusHours(1))).isTrue();
+        assertThat(bitmap.isFree(NINE.plusMinutes(25), NINE.plusMinutes(30))).isFalse();
+    }
+
+    @Test
+    void should_handle_ranges_across_words_and_pages(){
+        LocalDateTime from = LocalDateTime.of(2023, 1, 1, 0, 0);
+        LocalDateTime to = from.plusDays(70);
+        bitmap.mark(from, to);
+
+        assertThat(bitmap.isFree(from.plusDays(33), from.plusDays(33).plusMinutes(5))).isFalse();
+        assertThat(bitmap.isFree(to, to.plusMinutes(5))).isTrue();
+        assertThat(bitmap.isFree(from.minusMinutes(5), from)).isTrue();
+
+        bitmap.clear(from.plusDays(10), from.plusDays(40));
+        assertThat(bitmap.isFree(from.plusDays(10), from.plusDays(40))).isTrue();
+        assertThat(bitmap.isFree(from.plusDays(40), from.plusDays(40).plusMinutes(5))).isFalse();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.entities.Doctor;
+import com.example.demo.ids.TimeOrderedIds;
+import com.example.demo.repositories.DoctorRepository;
+
+class TimeOrderedIdsUnitTest {
+
+    private static final Instant NOW = Instant.parse("2023-04-24T09:00:00Z");
+
+    private AtomicLong clock;
+    private TimeOrderedIds ids;
+
+    @BeforeEach
+    void setup(){
+        clock = new AtomicLong(NOW.toEpochMilli());
+        ids = new TimeOrderedIds(7, clock::get);
+    }
+
+    @Test
+    void should_encode_time_and_node(){
+        long id = ids.next();
+
+        assertThat(id).isPositive();
+        assertThat(TimeOrderedIds.timeOf(id)).isEqualTo(NOW);
+        assertThat(TimeOrderedIds.nodeOf(id)).isEqualTo(7);
+    }
+
+    @Test
+    void should_grow_within_and_across_milliseconds(){
+        long first = ids.next();
+        long second = ids.next();
+        clock.addAndGet(1);
+        long third = ids.next();
+
+        assertThat(second).isGreaterThan(first);
+        assertThat(third).isGreaterThan(second);
+        assertThat(TimeOrderedIds.timeOf(third)).isEqualTo(NOW.plusMillis(1));
+    }
+
+    @Test
+    void should_keep_growing_when_the_clock_goes_back(){
+        long before = ids.next();
+        clock.addAndGet(-5000);
+
+        assertThat(ids.next()).isGreaterThan(before);
+    }
+
+    @Test
+    void should_borrow_the_next_millisecond_when_the_sequence_runs_out(){
+        long last = 0;
+        for (int i = 0; i < (1 << TimeOrderedIds.SEQUENCE_BITS) + 1; i++){
+            long id = ids.next();
+            assertThat(id).isGreaterThan(last);
+            last = id;
+        }
+
+        assertThat(TimeOrderedIds.timeOf(last)).isEqualTo(NOW.plusMillis(1));
+        assertThat(TimeOrderedIds.nodeOf(last)).isEqualTo(7);
+    }
+
+    @Test
+    void should_not_collide_across_nodes(){
+        TimeOrderedIds other = new TimeOrderedIds(8, clock::get);
+
+        assertThat(other.next()).isNotEqualTo(ids.next());
+    }
+
+    @Test
+    void should_reject_a_node_out_of_range(){
+        assertThatThrownBy(() -> new TimeOrderedIds(TimeOrderedIds.MAX_NODE + 1, clock::get))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
+
+@SpringBootTest(properties = "spring.jpa.properties.ids.generator=sequence")
+@AutoConfigureMockMvc
+class EntityIdGeneratorSequenceTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @AfterEach
+    void cleanup(){
+        doctorRepository.deleteAll();
+    }
+
+    @Test
+    void should_take_ids_from_the_sequence_when_configured() throws Exception {
+        Doctor doctor = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+
+        assertThat(doctor.getId()).isPositive().isLessThan(1L << 53);
+        mockMvc.perform(get("/api/doctors/" + doctor.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(String.valueOf(doctor.getId())));
+    }
+}
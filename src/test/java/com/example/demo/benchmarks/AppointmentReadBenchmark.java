@@ -0,0 +1,94 @@
+package com.example.demo.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.TechhubApplication;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.repositories.AppointmentSummary;
+
+/**
+ * Reading every appointment as entities (with their patient, doctor and
+ * room, as GET /api/appointments does) against reading summaries (as
+ * GET /api/appointments?view=summary does). Each read runs in its own
+ * transaction, so the flush-time dirty checking of the entities is
+ * included. Add the gc profiler for the allocation per read:
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="AppointmentReadBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AppointmentReadBenchmark {
+
+    @Param({"1000", "20000"})
+    int appointments;
+
+    ConfigurableApplicationContext context;
+    AppointmentRepository appointmentRepository;
+    TransactionTemplate transaction;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(TechhubApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=warn")
+                .run();
+        appointmentRepository = context.getBean(AppointmentRepository.class);
+        transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        LocalDateTime first = LocalDateTime.of(2030, 1, 1, 0, 0);
+        List<Appointment> batch = new ArrayList<>();
+        for (int i = 0; i < appointments; i++) {
+            LocalDateTime startsAt = first.plusMinutes(30L * i);
+            batch.add(new Appointment(new Patient("Bench", "Patient", 40, i + "@patient"),
+                    new Doctor("Bench", "Doctor", 40, i + "@doctor"),
+                    new Room("Room " + i), startsAt, startsAt.plusMinutes(30)));
+            if (batch.size() == 500) {
+                appointmentRepository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        appointmentRepository.saveAll(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Appointment> entities() {
+        return transaction.execute(status -> appointmentRepository.findAllWithAssociations());
+    }
+
+    @Benchmark
+    public List<AppointmentSummary> summaries() {
+        return transaction.execute(status -> appointmentRepository.findAllSummaries());
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.TechhubApplication;
+import com.example.demo.booking.BookingDispatcher;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.RoomRepository;
+import com.example.demo.schedule.ScheduleConflict;
+
+/**
+ * Booking throughput of POST /api/appointment's transaction, per booking mode.
+ *
+ * bookOwnRoom gives every benchmark thread its own room, bookSharedRoom
+ * sends every thread to the same one. With LOCKING and LANES the first
+ * should grow with the thread count and the second should stay flat; QUERY
+ * is the unsynchronized baseline. main() runs both
+ * for 1, 2, 4 and 8 threads:
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.example.demo.benchmarks.BookingThroughputBenchmark
+ *
+ * The test H2 database commits one transaction at a time, so run it against
+ * MySQL to see the scaling, e.g. with
+ * -Dbenchmark.args="BookingThroughputBenchmark -t 4 -jvmArgsAppend -Dspring.datasource.url=jdbc:mysql://..."
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class BookingThroughputBenchmark {
+
+    private static final LocalDateTime FIRST_SLOT = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+    @State(Scope.Benchmark)
+    public static class Context {
+
+        @Param({"locking", "lanes", "query"})
+        String mode;
+
+        ConfigurableApplicationContext context;
+        BookingDispatcher bookingDispatcher;
+        RoomRepository roomRepository;
+
+        final AtomicInteger rooms = new AtomicInteger();
+        final AtomicLong sharedSlots = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void start() {
+            context = new SpringApplicationBuilder(TechhubApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .properties("booking.mode=" + mode, "logging.level.root=warn")
+                    .run();
+            bookingDispatcher = context.getBean(BookingDispatcher.class);
+            roomRepository = context.getBean(RoomRepository.class);
+            roomRepository.save(new Room("Shared"));
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OwnRoom {
+
+        String roomName;
+        long slot;
+
+        @Setup(Level.Trial)
+        public void createRoom(Context context) {
+            roomName = "Room-" + context.rooms.incrementAndGet();
+            context.roomRepository.save(new Room(roomName));
+        }
+    }
+
+    static Appointment appointment(String roomName, long slot) {
+        LocalDateTime startsAt = FIRST_SLOT.plusMinutes(30 * slot);
+        return new Appointment(new Patient("Bench", "Patient", 40, "patient@bench"),
+                new Doctor("Bench", "Doctor", 40, "doctor@bench"),
+                new Room(roomName), startsAt, startsAt.plusMinutes(30));
+    }
+
+    @Benchmark
+    public List<ScheduleConflict> bookOwnRoom(Context context, OwnRoom room) {
+        return context.bookingDispatcher.book(appointment(room.roomName, room.slot++));
+    }
+
+    @Benchmark
+    public List<ScheduleConflict> bookSharedRoom(Context context) {
+        return context.bookingDispatcher.book(appointment("Shared", context.sharedSlots.getAndIncrement()));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] threadCounts = {1, 2, 4, 8};
+        StringBuilder table = new StringBuilder();
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .include(BookingThroughputBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            for (RunResult result : new Runner(options).run()) {
+                table.append(String.format("%-16s %-8s threads=%d %12.1f ops/s%n",
+                        result.getParams().getBenchmark().replaceAll(".*\\.", ""),
+                        result.getParams().getParam("mode"), threads,
+                        result.getPrimaryResult().getScore()));
+            }
+        }
+        System.out.print(table);
+    }
+}
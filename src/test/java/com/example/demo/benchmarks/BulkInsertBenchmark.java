@@ -0,0 +1,109 @@
+package com.example.demo.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.TechhubApplication;
+import com.example.demo.booking.BookingService;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.BulkPersister;
+import com.example.demo.repositories.DoctorRepository;
+import com.example.demo.repositories.PatientRepository;
+
+/**
+ * Rows stored per second by the bulk paths, per hibernate.jdbc.batch_size.
+ *
+ * patients stores ROWS new patients through the BulkPersister, as POST
+ * /api/patients/batch does; appointments stores ROWS appointments of a
+ * stored doctor and patient through BookingService.storeAll, as POST
+ * /api/appointments/batch does. A batch size of 1 is the old one round
+ * trip per row.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="BulkInsertBenchmark"
+ *
+ * That runs on the test H2 database. For MySQL point it at a server, e.g.
+ * -Dbenchmark.args="BulkInsertBenchmark -jvmArgsAppend -Dspring.datasource.url=jdbc:mysql://...?rewriteBatchedStatements=true"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkInsertBenchmark {
+
+    private static final int ROWS = 1000;
+
+    @Param({"1", "10", "50", "100", "500", "1000"})
+    int batchSize;
+
+    ConfigurableApplicationContext context;
+    BulkPersister bulkPersister;
+    BookingService bookingService;
+    Doctor doctor;
+    Patient patient;
+    LocalDateTime next = LocalDateTime.of(2030, 1, 1, 0, 0);
+    // Every invocation books new people
+    long people;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(TechhubApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=warn",
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize)
+                .run();
+        bulkPersister = context.getBean(BulkPersister.class);
+        bookingService = context.getBean(BookingService.class);
+        doctor = context.getBean(DoctorRepository.class).save(new Doctor("Bench", "Doctor", 40, "bench@doctor"));
+        patient = context.getBean(PatientRepository.class).save(new Patient("Bench", "Patient", 40, "bench@patient"));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Patient> patients() {
+        List<Patient> patients = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            patients.add(new Patient("Bench", "Patient " + i, 40, people++ + "@patient"));
+        }
+        return bulkPersister.persistAll(patients);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Appointment> appointments() {
+        List<Appointment> appointments = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            appointments.add(new Appointment(patient, doctor, new Room("Bench room"), next, next.plusMinutes(30)));
+            next = next.plusMinutes(30);
+        }
+        bookingService.storeAll(appointments);
+        return appointments;
+    }
+}
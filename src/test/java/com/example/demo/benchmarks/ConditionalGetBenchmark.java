@@ -0,0 +1,109 @@
+package com.example.demo.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import com.example.demo.TechhubApplication;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.AppointmentRepository;
+
+/**
+ * A poll of GET /api/appointments that downloads the list against one that
+ * sends the ETag of the previous answer and gets 304, through the whole
+ * Spring MVC stack. The body size of each poll is reported as the
+ * bodyBytes secondary result; add the gc profiler for the allocation per
+ * poll:
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="ConditionalGetBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConditionalGetBenchmark {
+
+    @Param({"100", "1000"})
+    int appointments;
+
+    ConfigurableApplicationContext context;
+    MockMvc mockMvc;
+    String etag;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        context = new SpringApplicationBuilder(TechhubApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .properties("logging.level.root=warn", "server.port=0",
+                        "spring.jpa.properties.hibernate.generate_statistics=false")
+                .run();
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        LocalDateTime first = LocalDateTime.of(2030, 1, 1, 0, 0);
+        List<Appointment> batch = new ArrayList<>();
+        for (int i = 0; i < appointments; i++) {
+            LocalDateTime startsAt = first.plusMinutes(30L * i);
+            batch.add(new Appointment(new Patient("Bench", "Patient", 40, i + "@patient"),
+                    new Doctor("Bench", "Doctor", 40, i + "@doctor"),
+                    new Room("Room " + i), startsAt, startsAt.plusMinutes(30)));
+        }
+        context.getBean(AppointmentRepository.class).saveAll(batch);
+
+        etag = mockMvc.perform(get("/api/appointments")).andReturn().getResponse().getHeader("ETag");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse full(Body body) throws Exception {
+        return body.of(mockMvc.perform(get("/api/appointments")).andReturn().getResponse());
+    }
+
+    @Benchmark
+    public MockHttpServletResponse notModified(Body body) throws Exception {
+        return body.of(mockMvc.perform(get("/api/appointments").header("If-None-Match", etag)).andReturn().getResponse());
+    }
+
+    // Reported as is next to the time per poll: the size of one response body
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Body {
+
+        public long bodyBytes;
+
+        MockHttpServletResponse of(MockHttpServletResponse response) {
+            bodyBytes = response.getContentAsByteArray().length;
+            return response;
+        }
+    }
+}
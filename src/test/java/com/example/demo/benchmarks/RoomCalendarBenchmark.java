@@ -0,0 +1,111 @@
+package com.example.demo.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.entities.*;
+import com.example.demo.schedule.ScheduleIndex;
+import com.example.demo.schedule.SlotBitmap;
+
+/**
+ * Cost of answering "is this room free between these times" for a room
+ * holding the given number of hour-long appointments, one every two hours:
+ *
+ * - overlapsLoop: Appointment.overlaps against every appointment, the
+ *   check POST /api/appointment used to run
+ * - scheduleIndex: ScheduleIndex.findConflicts, the bitmap then the
+ *   sorted per-room schedule, as the INDEX booking mode checks it
+ * - slotBitmap: the off-heap 5 minute slot bitmap alone
+ *
+ * Half of the probed ranges are free and half overlap an appointment.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="RoomCalendarBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoomCalendarBenchmark {
+
+    private static final LocalDateTime FIRST = LocalDateTime.of(2030, 1, 1, 0, 0);
+    private static final int PROBES = 1024;
+
+    @Param({"100", "10000"})
+    int appointments;
+
+    List<Appointment> stored;
+    ScheduleIndex scheduleIndex;
+    SlotBitmap slotBitmap;
+    Appointment[] probes;
+    int next;
+
+    @Setup
+    public void setup() {
+        Patient patient = new Patient("Bench", "Patient", 40, "patient@bench");
+        Doctor doctor = new Doctor("Bench", "Doctor", 40, "doctor@bench");
+        Room room = new Room("Bench");
+        stored = new ArrayList<>();
+        scheduleIndex = new ScheduleIndex();
+        slotBitmap = new SlotBitmap();
+        for (int i = 0; i < appointments; i++) {
+            LocalDateTime startsAt = FIRST.plusHours(2L * i);
+            Appointment appointment = new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1));
+            appointment.setId(i + 1);
+            stored.add(appointment);
+            scheduleIndex.add(appointment);
+            slotBitmap.mark(startsAt, startsAt.plusHours(1));
+        }
+        probes = new Appointment[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            // Spread over the whole schedule; odd probes start inside a busy hour
+            long hour = 2L * ((long) i * appointments / PROBES) + (i % 2 == 0 ? 1 : 0);
+            LocalDateTime startsAt = FIRST.plusHours(hour).plusMinutes(i % 2 == 0 ? 0 : 30);
+            probes[i] = new Appointment(patient, doctor, room, startsAt, startsAt.plusMinutes(30));
+        }
+    }
+
+    private Appointment nextProbe() {
+        Appointment probe = probes[next];
+        next = (next + 1) % PROBES;
+        return probe;
+    }
+
+    @Benchmark
+    public boolean overlapsLoop() {
+        Appointment probe = nextProbe();
+        for (Appointment appointment : stored) {
+            if (appointment.overlaps(probe)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean scheduleIndex() {
+        Appointment probe = nextProbe();
+        return scheduleIndex.findConflicts(probe).isEmpty();
+    }
+
+    @Benchmark
+    public boolean slotBitmap() {
+        Appointment probe = nextProbe();
+        return slotBitmap.isFree(probe.getStartsAt(), probe.getFinishesAt());
+    }
+}